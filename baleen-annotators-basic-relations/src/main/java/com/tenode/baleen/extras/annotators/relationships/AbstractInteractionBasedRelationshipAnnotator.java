@@ -9,6 +9,7 @@ import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 
 import com.google.common.base.Objects;
+import com.tenode.baleen.extras.common.jcas.CoverageIndex;
 
 import uk.gov.dstl.baleen.types.language.Interaction;
 import uk.gov.dstl.baleen.types.language.Sentence;
@@ -24,10 +25,13 @@ public abstract class AbstractInteractionBasedRelationshipAnnotator extends Bale
 		try {
 			preExtract(jCas);
 
+			final CoverageIndex<Sentence, Interaction> interactionIndex = CoverageIndex.build(jCas, Interaction.class);
+			final CoverageIndex<Sentence, Entity> entityIndex = CoverageIndex.build(jCas, Entity.class);
+
 			for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
 
-				final List<Interaction> interactions = JCasUtil.selectCovered(jCas, Interaction.class, sentence);
-				final List<Entity> entities = JCasUtil.selectCovered(jCas, Entity.class, sentence);
+				final List<Interaction> interactions = interactionIndex.getCovered(sentence);
+				final List<Entity> entities = entityIndex.getCovered(sentence);
 
 				// Check we have enough in the sentence to warrant further work
 				if (!interactions.isEmpty() && entities.size() >= 2) {
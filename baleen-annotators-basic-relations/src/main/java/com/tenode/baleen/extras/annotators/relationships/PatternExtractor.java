@@ -1,18 +1,26 @@
 package com.tenode.baleen.extras.annotators.relationships;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.resource.ResourceInitializationException;
 
 import com.tenode.baleen.extras.annotators.relationships.data.PatternExtract;
+import com.tenode.baleen.extras.common.jcas.CoverageIndex;
+import com.tenode.baleen.extras.common.language.CaseInsensitiveWordSet;
 import com.tenode.baleen.extras.common.language.StopWordRemover;
+import com.tenode.baleen.extras.common.resources.SharedStopWordResource;
 
 import uk.gov.dstl.baleen.types.language.Pattern;
 import uk.gov.dstl.baleen.types.language.Sentence;
@@ -53,102 +61,203 @@ public class PatternExtractor extends BaleenAnnotator {
 	@ConfigurationParameter(name = PatternExtractor.PARAM_WINDOW_SIZE, defaultValue = "5")
 	private int windowSize;
 
-	private final StopWordRemover stopWordRemover = new StopWordRemover();
+	/**
+	 * Patterns containing any of these words are discarded (as the entities are unlikely to be
+	 * positively related).
+	 *
+	 * Words are matched whole and ignoring case.
+	 *
+	 * @baleen.config no, not, neither
+	 */
+	public static final String PARAM_NEGATIONS = "negations";
+	@ConfigurationParameter(name = PatternExtractor.PARAM_NEGATIONS, defaultValue = { "no", "not", "neither" })
+	private String[] negationWords;
+
+	/**
+	 * Extract the patterns of each sentence in parallel.
+	 *
+	 * The patterns are still added to the JCas in document order (from the calling thread). This
+	 * reduces the time taken for large documents on multi-core machines.
+	 *
+	 * @baleen.config false
+	 */
+	public static final String PARAM_PARALLEL = "parallel";
+	@ConfigurationParameter(name = PatternExtractor.PARAM_PARALLEL, defaultValue = "false")
+	private boolean parallel;
+
+	/**
+	 * The stop words to remove from patterns.
+	 *
+	 * If not provided the default stop word list is used.
+	 *
+	 * @baleen.resource com.tenode.baleen.extras.common.resources.SharedStopWordResource
+	 */
+	public static final String KEY_STOPWORDS = "stopwords";
+	@ExternalResource(key = PatternExtractor.KEY_STOPWORDS, mandatory = false)
+	private SharedStopWordResource stopWordResource;
+
+	private StopWordRemover stopWordRemover;
+
+	private CaseInsensitiveWordSet negations;
+
+	@Override
+	public void doInitialize(final UimaContext aContext) throws ResourceInitializationException {
+		super.doInitialize(aContext);
+
+		if (stopWordResource != null) {
+			stopWordRemover = stopWordResource.getStopWordRemover();
+		} else {
+			stopWordRemover = new StopWordRemover();
+		}
+
+		negations = new CaseInsensitiveWordSet(Arrays.asList(negationWords));
+	}
 
 	@Override
 	protected void doProcess(final JCas jCas) throws AnalysisEngineProcessException {
 
-		for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
+		final CoverageIndex<Sentence, Entity> entityIndex = CoverageIndex.build(jCas, Entity.class);
+		final CoverageIndex<Sentence, WordToken> wordIndex = CoverageIndex.build(jCas, WordToken.class);
 
-			final List<Entity> entities = JCasUtil.selectCovered(jCas, Entity.class, sentence);
-			final List<WordToken> words = JCasUtil.selectCovered(jCas, WordToken.class, sentence);
-
-			// Remove words which are covered by an entity
-			final List<WordToken> nonEntityWords = words.stream().filter(w -> !entities.stream().anyMatch(e -> {
-				return e.getBegin() <= w.getBegin() && w.getEnd() <= e.getEnd();
-			})).collect(Collectors.toList());
-
-			// Find entities within (windowSize) words of one another
-
-			final String text = jCas.getDocumentText();
-			final String lowerText = text.toLowerCase();
-			final List<PatternExtract> patterns = new ArrayList<PatternExtract>();
-			for (int i = 0; i < entities.size(); i++) {
-				for (int j = i + 1; j < entities.size(); j++) {
-
-					final Entity a = entities.get(i);
-					final Entity b = entities.get(j);
-
-					if (a.getEnd() < b.getBegin()) {
-						// A is before B
-						patterns.add(new PatternExtract(a, b, a.getEnd(), b.getBegin()));
-					} else if (a.getBegin() > b.getEnd()) {
-						patterns.add(new PatternExtract(a, b, b.getEnd(), a.getBegin()));
-					} else {
-						// Overlapping entities ... ignore as no words between them
-					}
-				}
-			}
+		final String text = jCas.getDocumentText();
 
-			// Filter out patterns which are too far way
-			// Filter out patterns which contain no, not or neither
-
-			patterns.stream()
-					.filter(p -> {
-						final int count = countWordsBetween(p, words);
-						return count >= 0 && count < windowSize;
-					})
-					// TODO: Bug we should look for \bword\b since we are discarding patterns
-					// contain words like nothing here!
-					.filter(p -> !p.contains(lowerText, "no", "not", "neither"))
-					.forEach(p -> {
-						// Remove any other entities from the pattern
-						// Remove stop words from the pattern
-
-						// TODO: I question this in the paper. Whilst it is true we don't want stop
-						// words I think we want
-						// to extract a phrase. Their example is "play a role" which becomes
-						// "play,role"
-						p.setWordTokens(removeAdditionalWords(p, nonEntityWords.stream()).collect(Collectors.toList()));
-
-						if (!p.isEmpty()) {
-							outputPattern(jCas, p);
-						}
-					});
+		if (!parallel) {
+			// Extract and add each sentence's patterns in turn
+			for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
+				extractPatterns(text, entityIndex.getCovered(sentence), wordIndex.getCovered(sentence))
+						.forEach(p -> outputPattern(jCas, p));
+			}
+			return;
+		}
 
+		// Gather the annotations for each sentence (the JCas is only read from here on, until the
+		// patterns are added)
+		final List<List<Entity>> sentenceEntities = new ArrayList<>();
+		final List<List<WordToken>> sentenceWords = new ArrayList<>();
+		for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
+			sentenceEntities.add(entityIndex.getCovered(sentence));
+			sentenceWords.add(wordIndex.getCovered(sentence));
 		}
 
+		final List<List<PatternExtract>> patterns = IntStream.range(0, sentenceEntities.size())
+				.parallel()
+				.mapToObj(i -> extractPatterns(text, sentenceEntities.get(i), sentenceWords.get(i)))
+				.collect(Collectors.toList());
+
+		// Add to the JCas in document order
+		patterns.forEach(list -> list.forEach(p -> outputPattern(jCas, p)));
+
 	}
 
-	private int countWordsBetween(final PatternExtract p, final List<WordToken> words) {
-		int startWord = -1;
-		int endWord = -1;
+	/**
+	 * Extract the (non-empty) patterns from a sentence.
+	 *
+	 * This does not modify the JCas, so may be called for different sentences concurrently.
+	 *
+	 * @param text
+	 *            the document text
+	 * @param entities
+	 *            the entities in the sentence
+	 * @param words
+	 *            the words in the sentence
+	 * @return the patterns
+	 */
+	private List<PatternExtract> extractPatterns(final String text, final List<Entity> entities,
+			final List<WordToken> words) {
+		// Mark the words which are covered by an entity
+		final SentenceWords sentenceWords = new SentenceWords(words, entities);
 
-		int i = 0;
-		for (final WordToken w : words) {
-			if (w.getBegin() <= p.getStart() && w.getEnd() >= p.getStart()) {
-				startWord = i;
-			}
+		// Find entities within (windowSize) words of one another
+		final List<PatternExtract> patterns = findCandidatePatterns(entities, sentenceWords);
 
-			if (w.getBegin() <= p.getEnd() && w.getEnd() >= p.getEnd()) {
-				endWord = i;
+		final List<PatternExtract> retained = new ArrayList<>(patterns.size());
+		for (final PatternExtract p : patterns) {
+			// Filter out patterns which contain negations (eg no, not or neither)
+			if (p.contains(text, negations)) {
+				continue;
 			}
 
-			i++;
+			// Remove any other entities from the pattern
+			// Remove stop words from the pattern
+
+			// TODO: I question this in the paper. Whilst it is true we don't want stop
+			// words I think we want
+			// to extract a phrase. Their example is "play a role" which becomes
+			// "play,role"
+			p.setWordTokens(
+					removeAdditionalWords(text, sentenceWords.nonEntityWordsBetween(p.getStart(), p.getEnd())));
+
+			if (!p.isEmpty()) {
+				retained.add(p);
+			}
 		}
+		return retained;
+	}
 
-		if (startWord == -1 || endWord == -1) {
-			return -1;
+	/**
+	 * Find the pairs of entities which are less than windowSize words apart.
+	 *
+	 * The entities are in offset order, so for each entity we only need to look forward until the
+	 * following entities are beyond the window.
+	 *
+	 * @param entities
+	 *            the entities in the sentence (in index order)
+	 * @param words
+	 *            the words in the sentence
+	 * @return the candidate patterns
+	 */
+	private List<PatternExtract> findCandidatePatterns(final List<Entity> entities, final SentenceWords words) {
+		final List<PatternExtract> patterns = new ArrayList<>();
+
+		for (int i = 0; i < entities.size(); i++) {
+			final Entity a = entities.get(i);
+			final int startWord = words.wordAt(a.getEnd());
+			if (startWord == -1) {
+				continue;
+			}
+
+			for (int j = i + 1; j < entities.size(); j++) {
+				final Entity b = entities.get(j);
+
+				if (b.getBegin() <= a.getEnd()) {
+					// Overlapping entities ... ignore as no words between them
+					continue;
+				}
+
+				if (words.firstWordEndingFrom(b.getBegin()) - startWord >= windowSize) {
+					// This, and every following, entity is too far away
+					break;
+				}
+
+				final int endWord = words.wordAt(b.getBegin());
+				final int count = endWord - startWord;
+				if (endWord != -1 && count >= 0 && count < windowSize) {
+					patterns.add(new PatternExtract(a, b, a.getEnd(), b.getBegin()));
+				}
+			}
 		}
 
-		return endWord - startWord;
+		return patterns;
 	}
 
-	private Stream<WordToken> removeAdditionalWords(final PatternExtract pe, final Stream<WordToken> tokens) {
-		return tokens
-				.filter(t -> t.getBegin() >= pe.getStart() && t.getEnd() <= pe.getEnd())
-				.filter(t -> !stopWordRemover.isStopWord(t.getCoveredText()))
-				.filter(t -> t.getCoveredText().trim().length() > 1);
+	private List<WordToken> removeAdditionalWords(final String text, final List<WordToken> tokens) {
+		return tokens.stream()
+				.filter(t -> !stopWordRemover.isStopWord(text, t.getBegin(), t.getEnd()))
+				.filter(t -> trimmedLength(text, t.getBegin(), t.getEnd()) > 1)
+				.collect(Collectors.toList());
+	}
+
+	// Equivalent to getCoveredText().trim().length() without creating the strings
+	private static int trimmedLength(final String text, final int begin, final int end) {
+		int from = begin;
+		int to = end;
+		while (from < to && text.charAt(from) <= ' ') {
+			from++;
+		}
+		while (to > from && text.charAt(to - 1) <= ' ') {
+			to--;
+		}
+		return to - from;
 	}
 
 	private void outputPattern(final JCas jCas, final PatternExtract pattern) {
@@ -169,4 +278,145 @@ public class PatternExtractor extends BaleenAnnotator {
 		addToJCasIndex(a);
 	}
 
+	/**
+	 * The offsets of the words in a sentence, for mapping a character offset to a word index, and
+	 * which of those words are covered by an entity.
+	 */
+	private static final class SentenceWords {
+
+		private final List<WordToken> words;
+
+		private final BitSet covered;
+
+		private final int[] begins;
+
+		private final int[] ends;
+
+		// The maximum end of words[0..i], which is sorted even if words overlap
+		private final int[] maxEnds;
+
+		SentenceWords(final List<WordToken> words, final List<Entity> entities) {
+			this.words = words;
+
+			final int size = words.size();
+			begins = new int[size];
+			ends = new int[size];
+			maxEnds = new int[size];
+			covered = new BitSet(size);
+
+			// Both lists are in begin order, so sweep through the entities alongside the words,
+			// tracking the furthest end of any entity which begins at or before the word.
+			int maxEnd = Integer.MIN_VALUE;
+			int maxEntityEnd = Integer.MIN_VALUE;
+			int e = 0;
+			for (int i = 0; i < size; i++) {
+				final WordToken w = words.get(i);
+				begins[i] = w.getBegin();
+				ends[i] = w.getEnd();
+				maxEnd = Math.max(maxEnd, ends[i]);
+				maxEnds[i] = maxEnd;
+
+				while (e < entities.size() && entities.get(e).getBegin() <= begins[i]) {
+					maxEntityEnd = Math.max(maxEntityEnd, entities.get(e).getEnd());
+					e++;
+				}
+				if (maxEntityEnd >= ends[i]) {
+					covered.set(i);
+				}
+			}
+		}
+
+		/**
+		 * The words within the range which are not covered by an entity.
+		 *
+		 * @param start
+		 *            the start offset
+		 * @param end
+		 *            the end offset
+		 * @return the words in index order
+		 */
+		List<WordToken> nonEntityWordsBetween(final int start, final int end) {
+			final List<WordToken> between = new ArrayList<>();
+			for (int i = lowerBound(begins, start); i < begins.length && begins[i] <= end; i++) {
+				if (ends[i] <= end && !covered.get(i)) {
+					between.add(words.get(i));
+				}
+			}
+			return between;
+		}
+
+		/**
+		 * The index of the last word which contains the offset (begin <= offset <= end).
+		 *
+		 * @param offset
+		 *            the character offset
+		 * @return the word index or -1 if none
+		 */
+		int wordAt(final int offset) {
+			// Start from the last word which begins at or before the offset
+			int k = upperBound(begins, offset) - 1;
+			while (k >= 0 && maxEnds[k] >= offset) {
+				if (ends[k] >= offset) {
+					return k;
+				}
+				k--;
+			}
+			return -1;
+		}
+
+		/**
+		 * The index of the first word which ends at or after the offset.
+		 *
+		 * This is a lower bound on wordAt(offset) (when that exists), and never decreases as the
+		 * offset increases.
+		 *
+		 * @param offset
+		 *            the character offset
+		 * @return the word index (the number of words if none)
+		 */
+		int firstWordEndingFrom(final int offset) {
+			int low = 0;
+			int high = maxEnds.length;
+			while (low < high) {
+				final int mid = low + high >>> 1;
+				if (maxEnds[mid] < offset) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		// The first position with value >= offset
+		private static int lowerBound(final int[] values, final int offset) {
+			int low = 0;
+			int high = values.length;
+			while (low < high) {
+				final int mid = low + high >>> 1;
+				if (values[mid] < offset) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		// The first position with value > offset
+		private static int upperBound(final int[] values, final int offset) {
+			int low = 0;
+			int high = values.length;
+			while (low < high) {
+				final int mid = low + high >>> 1;
+				if (values[mid] <= offset) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
 }
@@ -1,9 +1,10 @@
 package com.tenode.baleen.extras.annotators.relationships.data;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.tenode.baleen.extras.common.language.CaseInsensitiveWordSet;
+
 import uk.gov.dstl.baleen.types.language.WordToken;
 import uk.gov.dstl.baleen.types.semantic.Entity;
 
@@ -112,6 +113,9 @@ public final class PatternExtract {
 	/**
 	 * Determine if any of the needles are contained in this covering document text.
 	 *
+	 * The needles must match whole words (ignoring case), so "no" is not contained in "nothing". The
+	 * start and end of the pattern are treated as word boundaries.
+	 *
 	 * @param documentText
 	 *            the document text
 	 * @param needles
@@ -119,8 +123,58 @@ public final class PatternExtract {
 	 * @return true, if successful
 	 */
 	public boolean contains(final String documentText, final String... needles) {
-		final String text = documentText.substring(start, end);
-		return Arrays.stream(needles).anyMatch(text::contains);
+		for (final String needle : needles) {
+			final int length = needle.length();
+			if (length == 0) {
+				continue;
+			}
+
+			for (int i = start; i + length <= end; i++) {
+				if (documentText.regionMatches(true, i, needle, 0, length)
+						&& isBoundary(documentText, i) && isBoundary(documentText, i + length)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if any word in this covering document text is in the set of words.
+	 *
+	 * A word is a run of letters or digits (within the pattern range). This does not create any
+	 * objects, so is preferred when the same words are checked against many patterns.
+	 *
+	 * @param documentText
+	 *            the document text
+	 * @param words
+	 *            the words to look for
+	 * @return true, if successful
+	 */
+	public boolean contains(final CharSequence documentText, final CaseInsensitiveWordSet words) {
+		int i = start;
+		while (i < end) {
+			while (i < end && !Character.isLetterOrDigit(documentText.charAt(i))) {
+				i++;
+			}
+
+			final int wordStart = i;
+			while (i < end && Character.isLetterOrDigit(documentText.charAt(i))) {
+				i++;
+			}
+
+			if (i > wordStart && words.contains(documentText, wordStart, i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// A word boundary is at the edge of the pattern or between a word and non-word character
+	private boolean isBoundary(final String documentText, final int offset) {
+		return offset <= start || offset >= end
+				|| !Character.isLetterOrDigit(documentText.charAt(offset - 1))
+				|| !Character.isLetterOrDigit(documentText.charAt(offset));
 	}
 
 	/**
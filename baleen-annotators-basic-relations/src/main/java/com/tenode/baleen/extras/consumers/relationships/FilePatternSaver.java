@@ -0,0 +1,137 @@
+package com.tenode.baleen.extras.consumers.relationships;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.bson.types.ObjectId;
+
+import com.mongodb.DBObject;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternFileWriter;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternSchema;
+
+import uk.gov.dstl.baleen.types.Base;
+import uk.gov.dstl.baleen.types.language.Pattern;
+import uk.gov.dstl.baleen.types.semantic.Entity;
+import uk.gov.dstl.baleen.uima.BaleenConsumer;
+
+/**
+ * Saves patterns in a JCas to compressed files on local disk.
+ *
+ * This is an alternative to MongoPatternSaver which does not need a database. The patterns are
+ * saved in the same (full) form as MongoPatternSaver, as gzip compressed newline delimited JSON
+ * files (see PatternFileWriter). The jobs which read patterns (eg ClusterTask) can be pointed at
+ * the directory in place of a Mongo collection.
+ *
+ * Existing files in the directory are not removed, so that should be done manually between runs.
+ *
+ * @baleen.javadoc
+ */
+public class FilePatternSaver extends BaleenConsumer {
+
+	/**
+	 * The directory to write the pattern files to (created if it does not exist)
+	 *
+	 * @baleen.config patterns
+	 */
+	public static final String KEY_DIRECTORY = "directory";
+	@ConfigurationParameter(name = FilePatternSaver.KEY_DIRECTORY, defaultValue = "patterns")
+	private String directory;
+
+	/**
+	 * The prefix of the pattern file names
+	 *
+	 * @baleen.config patterns
+	 */
+	public static final String KEY_PREFIX = "prefix";
+	@ConfigurationParameter(name = FilePatternSaver.KEY_PREFIX, defaultValue = "patterns")
+	private String prefix;
+
+	/**
+	 * The number of patterns to write to a file before starting a new one (0 to write a single
+	 * file).
+	 *
+	 * @baleen.config 100000
+	 */
+	public static final String KEY_PATTERNS_PER_FILE = "patternsPerFile";
+	@ConfigurationParameter(name = FilePatternSaver.KEY_PATTERNS_PER_FILE, defaultValue = "100000")
+	private int patternsPerFile;
+
+	/**
+	 * The size of the lemma n-grams to save as a signature of the pattern (0 to not save a
+	 * signature).
+	 *
+	 * @baleen.config 0
+	 */
+	public static final String KEY_NGRAMS = "ngrams";
+	@ConfigurationParameter(name = FilePatternSaver.KEY_NGRAMS, defaultValue = "0")
+	private int ngrams;
+
+	/**
+	 * Save a reference to the source of the pattern (the document hash, and the begin and end
+	 * offsets of the pattern).
+	 *
+	 * @baleen.config false
+	 */
+	public static final String KEY_SAVE_REFERENCE = "saveReference";
+	@ConfigurationParameter(name = FilePatternSaver.KEY_SAVE_REFERENCE, defaultValue = "false")
+	private boolean saveReference;
+
+	private final PatternSchema schema = PatternSchema.full();
+
+	private PatternFileWriter writer;
+
+	@Override
+	public void doInitialize(final UimaContext aContext) throws ResourceInitializationException {
+		super.doInitialize(aContext);
+
+		try {
+			writer = new PatternFileWriter(Paths.get(directory), prefix, patternsPerFile);
+		} catch (final IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
+	@Override
+	protected void doProcess(final JCas jCas) throws AnalysisEngineProcessException {
+
+		final String document = saveReference ? getDocumentAnnotation(jCas).getHash() : null;
+
+		try {
+			for (final Pattern pattern : JCasUtil.select(jCas, Pattern.class)) {
+				final Base source = pattern.getSource();
+				final Base target = pattern.getTarget();
+
+				if (source instanceof Entity && target instanceof Entity) {
+					final DBObject object = schema.pattern(pattern, ngrams, saveReference, document);
+					object.put("_id", new ObjectId());
+					writer.write(object);
+				}
+			}
+		} catch (final IOException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+	}
+
+	@Override
+	protected void doDestroy() {
+		if (writer != null) {
+			try {
+				writer.close();
+				getMonitor().info("Saved {} patterns to {} files in {}", writer.getWritten(), writer.getFileCount(),
+						directory);
+			} catch (final IOException e) {
+				getMonitor().error("Unable to close pattern file", e);
+			}
+			writer = null;
+		}
+
+		super.doDestroy();
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.tenode.baleen.extras.consumers.relationships;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -8,15 +11,17 @@ import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
-import com.mongodb.BasicDBList;
-import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternSchema;
+import com.tenode.baleen.extras.consumers.relationships.data.WriteBehindQueue;
 
+import uk.gov.dstl.baleen.core.metrics.Metrics;
 import uk.gov.dstl.baleen.resources.SharedMongoResource;
 import uk.gov.dstl.baleen.types.Base;
 import uk.gov.dstl.baleen.types.language.Pattern;
-import uk.gov.dstl.baleen.types.language.WordToken;
 import uk.gov.dstl.baleen.types.semantic.Entity;
 import uk.gov.dstl.baleen.uima.BaleenConsumer;
 
@@ -55,54 +60,217 @@ public class MongoPatternSaver extends BaleenConsumer {
 	@ConfigurationParameter(name = MongoPatternSaver.KEY_COLLECTION, defaultValue = "patterns")
 	private String collection;
 
+	/**
+	 * The size of the lemma n-grams to save as a signature of the pattern (0 to not save a
+	 * signature).
+	 *
+	 * The signature is a sorted list of the hashed n-grams (of size 1 to n), see PatternSignature.
+	 *
+	 * @baleen.config 0
+	 */
+	public static final String KEY_NGRAMS = "ngrams";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_NGRAMS, defaultValue = "0")
+	private int ngrams;
+
+	/**
+	 * The number of patterns to write to Mongo together.
+	 *
+	 * Patterns are held (across documents) until this many are ready and then written using a
+	 * single unordered bulk insert. With a batch size of 1 each pattern is saved as it is processed.
+	 * Any remaining patterns are written when the pipeline is destroyed.
+	 *
+	 * @baleen.config 1
+	 */
+	public static final String KEY_BATCH_SIZE = "batchSize";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_BATCH_SIZE, defaultValue = "1")
+	private int batchSize;
+
+	/**
+	 * The maximum time (in milliseconds) a pattern is held in an incomplete batch before it is
+	 * written (0 for no limit).
+	 *
+	 * This is checked after each document is processed.
+	 *
+	 * @baleen.config 0
+	 */
+	public static final String KEY_FLUSH_INTERVAL = "flushInterval";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_FLUSH_INTERVAL, defaultValue = "0")
+	private long flushInterval;
+
+	/**
+	 * The maximum number of patterns waiting to be written by a background thread (0 to write from
+	 * the pipeline thread).
+	 *
+	 * When set the pipeline does not wait on Mongo unless the queue is full. The writer thread saves
+	 * the waiting patterns in batches of up to batchSize (the flush interval is not used). All
+	 * patterns are written before the pipeline is destroyed.
+	 *
+	 * The queue depth (queueDepth histogram) and the time taken by each write (writeLatency timer)
+	 * are published in the metrics of this consumer.
+	 *
+	 * @baleen.config 0
+	 */
+	public static final String KEY_QUEUE_SIZE = "queueSize";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_QUEUE_SIZE, defaultValue = "0")
+	private int queueSize;
+
+	/**
+	 * Save patterns in the compact form (see PatternSchema).
+	 *
+	 * The compact form uses short field names, stores the part of speech and entity types as ids
+	 * (in the dictionary collection) and omits lemmas which are the same as the word.
+	 *
+	 * @baleen.config false
+	 */
+	public static final String KEY_COMPACT = "compact";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_COMPACT, defaultValue = "false")
+	private boolean compact;
+
+	/**
+	 * The name of the Mongo collection to hold the dictionary for the compact form.
+	 *
+	 * @baleen.config patternDictionary
+	 */
+	public static final String KEY_DICTIONARY_COLLECTION = "dictionaryCollection";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_DICTIONARY_COLLECTION, defaultValue = "patternDictionary")
+	private String dictionaryCollection;
+
+	/**
+	 * Save a reference to the source of the pattern (the document hash, and the begin and end
+	 * offsets of the pattern).
+	 *
+	 * @baleen.config false
+	 */
+	public static final String KEY_SAVE_REFERENCE = "saveReference";
+	@ConfigurationParameter(name = MongoPatternSaver.KEY_SAVE_REFERENCE, defaultValue = "false")
+	private boolean saveReference;
+
 	private DBCollection dbCollection;
 
+	private PatternSchema schema;
+
+	private WriteBehindQueue writeBehind;
+
+	private final List<DBObject> batch = new ArrayList<>();
+
+	private long batchStartTime;
+
 	@Override
 	public void doInitialize(final UimaContext aContext) throws ResourceInitializationException {
 		super.doInitialize(aContext);
 
 		dbCollection = mongo.getDB().getCollection(collection);
+
+		if (compact) {
+			schema = PatternSchema.compact(mongo.getDB().getCollection(dictionaryCollection));
+		} else {
+			schema = PatternSchema.full();
+		}
+
+		if (queueSize > 0) {
+			final Metrics metrics = getMonitor().getMetrics();
+			writeBehind = new WriteBehindQueue(dbCollection, queueSize, batchSize, getMonitor(),
+					metrics.getTimer("writeLatency"), metrics.getHistogram("queueDepth"));
+		}
 	}
 
 	@Override
 	protected void doProcess(final JCas jCas) throws AnalysisEngineProcessException {
 
+		final String document = saveReference ? getDocumentAnnotation(jCas).getHash() : null;
+
 		for (final Pattern pattern : JCasUtil.select(jCas, Pattern.class)) {
 			final Base source = pattern.getSource();
 			final Base target = pattern.getTarget();
 
 			if (source instanceof Entity && target instanceof Entity) {
-				final DBObject object = new BasicDBObject()
-						.append("source", saveEntity((Entity) source))
-						.append("target", saveEntity((Entity) target))
-						.append("words", saveWords(pattern));
+				save(schema.pattern(pattern, ngrams, saveReference, document));
+			}
+		}
 
-				dbCollection.save(object);
+		if (writeBehind != null) {
+			getMonitor().debug("{} patterns waiting to be written", writeBehind.getDepth());
+		} else if (flushInterval > 0 && !batch.isEmpty()
+				&& System.currentTimeMillis() - batchStartTime >= flushInterval) {
+			try {
+				flush();
+			} catch (final MongoException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+		}
+	}
+
+	@Override
+	protected void doDestroy() {
+		if (writeBehind != null) {
+			try {
+				writeBehind.close();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				getMonitor().warn("Interrupted waiting for patterns to be written", e);
+			} catch (final IllegalStateException e) {
+				getMonitor().error("Unable to write all patterns", e);
 			}
+			writeBehind = null;
 		}
+
+		try {
+			flush();
+		} catch (final MongoException e) {
+			// Logged (and the batch dropped) by flush
+		}
+
+		super.doDestroy();
 	}
 
-	private DBObject saveWords(final Pattern pattern) {
-		final BasicDBList list = new BasicDBList();
-		for (int i = 0; i < pattern.getWords().size(); i++) {
-			final WordToken w = pattern.getWords(i);
-			final BasicDBObject o = new BasicDBObject()
-					.append("text", w.getCoveredText())
-					.append("pos", w.getPartOfSpeech());
+	private void save(final DBObject object) throws AnalysisEngineProcessException {
+		if (writeBehind != null) {
+			try {
+				writeBehind.put(object);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AnalysisEngineProcessException(e);
+			} catch (final IllegalStateException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+			return;
+		}
+
+		try {
+			if (batchSize <= 1) {
+				dbCollection.save(object);
+				return;
+			}
 
-			if (w.getLemmas() != null && w.getLemmas().size() >= 1) {
-				o.put("lemma", w.getLemmas(0).getLemmaForm());
+			if (batch.isEmpty()) {
+				batchStartTime = System.currentTimeMillis();
 			}
 
-			list.add(o);
+			batch.add(object);
+			if (batch.size() >= batchSize) {
+				flush();
+			}
+		} catch (final MongoException e) {
+			throw new AnalysisEngineProcessException(e);
 		}
-		return list;
 	}
 
-	private DBObject saveEntity(final Entity entity) {
-		return new BasicDBObject()
-				.append("text", entity.getCoveredText())
-				.append("type", entity.getTypeName());
+	private void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		final BulkWriteOperation bulk = dbCollection.initializeUnorderedBulkOperation();
+		batch.forEach(bulk::insert);
+		try {
+			bulk.execute();
+		} catch (final MongoException e) {
+			// Some of the batch may have been written, so retrying would duplicate them
+			getMonitor().error("Unable to save batch, dropping up to {} patterns", batch.size(), e);
+			throw e;
+		} finally {
+			batch.clear();
+		}
 	}
 
 }
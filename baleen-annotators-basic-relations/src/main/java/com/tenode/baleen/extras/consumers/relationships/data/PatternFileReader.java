@@ -0,0 +1,144 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * Reads the pattern documents written by PatternFileWriter.
+ */
+public final class PatternFileReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private PatternFileReader() {
+		// Singleton
+	}
+
+	/**
+	 * Read all the pattern files in a directory.
+	 *
+	 * The files are read in name order, one at a time as the stream is consumed. Errors reading a
+	 * file are thrown as UncheckedIOException. The stream should be closed after use.
+	 *
+	 * @param directory
+	 *            the directory holding the pattern files
+	 * @return the pattern documents
+	 * @throws IOException
+	 *             Signals that the directory could not be listed
+	 */
+	public static Stream<DBObject> read(final Path directory) throws IOException {
+		final List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.filter(p -> p.getFileName().toString().endsWith(PatternFileWriter.EXTENSION))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+
+		final FileIterator iterator = new FileIterator(files);
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(iterator::close);
+	}
+
+	/**
+	 * Iterates over the documents in each file in turn.
+	 *
+	 * Only one file is open at a time. Each is opened when the previous one has been read to the
+	 * end, and closed at its end or when the iterator is closed.
+	 */
+	private static final class FileIterator implements Iterator<DBObject> {
+
+		private final Iterator<Path> files;
+
+		private BufferedReader reader;
+
+		private DBObject next;
+
+		FileIterator(final List<Path> files) {
+			this.files = files.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while (next == null) {
+					if (reader == null) {
+						if (!files.hasNext()) {
+							return false;
+						}
+						reader = open(files.next());
+					}
+
+					final String line = reader.readLine();
+					if (line == null) {
+						closeReader();
+					} else if (!line.isEmpty()) {
+						next = (DBObject) JSON.parse(line);
+					}
+				}
+				return true;
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public DBObject next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final DBObject o = next;
+			next = null;
+			return o;
+		}
+
+		void close() {
+			try {
+				closeReader();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void closeReader() throws IOException {
+			if (reader != null) {
+				final BufferedReader r = reader;
+				reader = null;
+				r.close();
+			}
+		}
+
+		private static BufferedReader open(final Path file) throws IOException {
+			final InputStream input = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+			try {
+				return new BufferedReader(
+						new InputStreamReader(new GZIPInputStream(input, BUFFER_SIZE), StandardCharsets.UTF_8),
+						BUFFER_SIZE);
+			} catch (final IOException e) {
+				input.close();
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * Writes pattern documents to rolling, gzip compressed, newline delimited JSON files.
+ *
+ * Each document is written as a single line of (Mongo extended) JSON. Once a file holds
+ * patternsPerFile documents it is closed and a new file started. Files are named
+ * prefix-id-number.ndjson.gz, where the id is unique to this writer, so several writers can share
+ * a directory. Files are never overwritten.
+ *
+ * The files can be read back with PatternFileReader. This class is not thread safe.
+ */
+public final class PatternFileWriter implements AutoCloseable {
+
+	/** The extension of pattern files. */
+	public static final String EXTENSION = ".ndjson.gz";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path directory;
+
+	private final String name;
+
+	private final int patternsPerFile;
+
+	private Writer writer;
+
+	private int fileCount = 0;
+
+	private int patternsInFile = 0;
+
+	private long written = 0;
+
+	/**
+	 * Instantiates a new pattern file writer, creating the directory if required.
+	 *
+	 * @param directory
+	 *            the directory to write to
+	 * @param prefix
+	 *            the prefix of the file names
+	 * @param patternsPerFile
+	 *            the number of patterns to write to each file (0 or less to write a single file)
+	 * @throws IOException
+	 *             Signals that the directory could not be created
+	 */
+	public PatternFileWriter(final Path directory, final String prefix, final int patternsPerFile)
+			throws IOException {
+		this.directory = directory;
+		this.name = prefix + "-" + UUID.randomUUID().toString();
+		this.patternsPerFile = patternsPerFile;
+
+		Files.createDirectories(directory);
+	}
+
+	/**
+	 * Write a pattern document.
+	 *
+	 * @param object
+	 *            the document
+	 * @throws IOException
+	 *             Signals that the document could not be written
+	 */
+	public void write(final DBObject object) throws IOException {
+		if (writer == null) {
+			writer = open();
+		}
+
+		writer.write(JSON.serialize(object));
+		writer.write('\n');
+		patternsInFile++;
+		written++;
+
+		if (patternsPerFile > 0 && patternsInFile >= patternsPerFile) {
+			closeFile();
+		}
+	}
+
+	/**
+	 * The number of documents written.
+	 *
+	 * @return the count
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	/**
+	 * The number of files created.
+	 *
+	 * @return the count
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeFile();
+	}
+
+	private Writer open() throws IOException {
+		final Path path = directory.resolve(String.format("%s-%05d%s", name, fileCount, EXTENSION));
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+		fileCount++;
+		patternsInFile = 0;
+
+		return new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+	}
+
+	private void closeFile() throws IOException {
+		if (writer != null) {
+			try {
+				writer.close();
+			} finally {
+				writer = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+
+import uk.gov.dstl.baleen.types.language.Pattern;
+import uk.gov.dstl.baleen.types.language.WordToken;
+import uk.gov.dstl.baleen.types.semantic.Entity;
+
+/**
+ * The layout of the pattern documents saved to Mongo (by MongoPatternSaver), in either the full or
+ * the compact form.
+ *
+ * The full form uses descriptive field names and stores every string. The compact form uses single
+ * letter field names, stores the part of speech and entity type as integer ids, and only stores the
+ * lemma when it differs from the word text. The ids are held in a separate dictionary collection of
+ * { _id: id, k: kind, v: value } documents.
+ *
+ * Readers should use readWords() which understands both forms, so a collection may hold a mix.
+ *
+ * The dictionary is loaded when the schema is created and added to as new values are written. The
+ * dictionary has a unique index on kind and value, and new ids are taken from a counter document
+ * ({ _id: "counter", n: next id }) in the same collection, so several writers may share it.
+ */
+public final class PatternSchema {
+
+	/** The source entity field. */
+	public static final String SOURCE = "source";
+
+	/** The target entity field. */
+	public static final String TARGET = "target";
+
+	/** The list of words field. */
+	public static final String WORDS = "words";
+
+	/** The n-gram signature field. */
+	public static final String SIGNATURE = "signature";
+
+	/** The text field (of an entity or word). */
+	public static final String TEXT = "text";
+
+	/** The entity type field. */
+	public static final String TYPE = "type";
+
+	/** The word part of speech field. */
+	public static final String POS = "pos";
+
+	/** The word lemma field. */
+	public static final String LEMMA = "lemma";
+
+	/** The document reference field. */
+	public static final String DOCUMENT = "document";
+
+	/** The pattern begin offset field. */
+	public static final String BEGIN = "begin";
+
+	/** The pattern end offset field. */
+	public static final String END = "end";
+
+	private static final Map<String, String> COMPACT_FIELDS = new HashMap<>();
+
+	static {
+		COMPACT_FIELDS.put(SOURCE, "s");
+		COMPACT_FIELDS.put(TARGET, "t");
+		COMPACT_FIELDS.put(WORDS, "w");
+		COMPACT_FIELDS.put(SIGNATURE, "n");
+		COMPACT_FIELDS.put(TEXT, "x");
+		COMPACT_FIELDS.put(TYPE, "y");
+		COMPACT_FIELDS.put(POS, "p");
+		COMPACT_FIELDS.put(LEMMA, "l");
+		COMPACT_FIELDS.put(DOCUMENT, "d");
+		COMPACT_FIELDS.put(BEGIN, "b");
+		COMPACT_FIELDS.put(END, "e");
+	}
+
+	private static final String DICTIONARY_KIND = "k";
+
+	private static final String DICTIONARY_VALUE = "v";
+
+	private static final String COUNTER_ID = "counter";
+
+	private static final String COUNTER_NEXT = "n";
+
+	private final boolean compact;
+
+	private final DBCollection dictionary;
+
+	private final Map<String, Map<String, Integer>> ids = new HashMap<>();
+
+	private final Map<Integer, String> values = new HashMap<>();
+
+	private PatternSchema(final boolean compact, final DBCollection dictionary) {
+		this.compact = compact;
+		this.dictionary = dictionary;
+
+		int nextId = 0;
+		if (dictionary != null) {
+			try (DBCursor cursor = dictionary.find()) {
+				while (cursor.hasNext()) {
+					final DBObject o = cursor.next();
+					if (o.get("_id") instanceof Number) {
+						final int id = ((Number) o.get("_id")).intValue();
+						cache(id, (String) o.get(DICTIONARY_KIND), (String) o.get(DICTIONARY_VALUE));
+						nextId = Math.max(nextId, id + 1);
+					}
+				}
+			}
+		}
+
+		if (compact) {
+			prepareDictionary(nextId);
+		}
+	}
+
+	/**
+	 * Checks if this schema writes the compact form.
+	 *
+	 * @return true, if compact
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * Get the name of the field, as written by this schema.
+	 *
+	 * @param name
+	 *            the full name of the field (eg PatternSchema.SOURCE)
+	 * @return the field name
+	 */
+	public String field(final String name) {
+		return compact ? COMPACT_FIELDS.getOrDefault(name, name) : name;
+	}
+
+	/**
+	 * Create the document to save for a pattern.
+	 *
+	 * @param pattern
+	 *            the pattern (the source and target must be entities)
+	 * @param ngrams
+	 *            the size of the n-gram signature to save (0 for none)
+	 * @param reference
+	 *            save the document reference and pattern offsets
+	 * @param document
+	 *            the document reference (eg the hash)
+	 * @return the document
+	 */
+	public DBObject pattern(final Pattern pattern, final int ngrams, final boolean reference,
+			final String document) {
+		final Entity source = (Entity) pattern.getSource();
+		final Entity target = (Entity) pattern.getTarget();
+
+		final List<String> lemmas = new ArrayList<>(pattern.getWords().size());
+		final BasicDBList words = new BasicDBList();
+		for (int i = 0; i < pattern.getWords().size(); i++) {
+			final WordToken w = pattern.getWords(i);
+
+			String lemma = null;
+			if (w.getLemmas() != null && w.getLemmas().size() >= 1) {
+				lemma = w.getLemmas(0).getLemmaForm();
+			}
+
+			words.add(word(w.getCoveredText(), w.getPartOfSpeech(), lemma));
+			lemmas.add((lemma != null ? lemma : w.getCoveredText()).trim().toLowerCase());
+		}
+
+		final DBObject object = new BasicDBObject()
+				.append(field(SOURCE), entity(source.getCoveredText(), source.getTypeName()))
+				.append(field(TARGET), entity(target.getCoveredText(), target.getTypeName()))
+				.append(field(WORDS), words);
+
+		if (ngrams > 0) {
+			final BasicDBList signature = new BasicDBList();
+			for (final int id : PatternSignature.calculate(lemmas, ngrams)) {
+				signature.add(id);
+			}
+			object.put(field(SIGNATURE), signature);
+		}
+
+		if (reference) {
+			object.put(field(DOCUMENT), document);
+			object.put(field(BEGIN), pattern.getBegin());
+			object.put(field(END), pattern.getEnd());
+		}
+
+		return object;
+	}
+
+	/**
+	 * Create the object to save for an entity.
+	 *
+	 * @param text
+	 *            the entity text
+	 * @param type
+	 *            the entity type name
+	 * @return the object
+	 */
+	public DBObject entity(final String text, final String type) {
+		final BasicDBObject o = new BasicDBObject().append(field(TEXT), text);
+		if (compact) {
+			o.put(field(TYPE), encode(TYPE, type));
+		} else {
+			o.put(TYPE, type);
+		}
+		return o;
+	}
+
+	/**
+	 * Create the object to save for a word.
+	 *
+	 * @param text
+	 *            the word text
+	 * @param pos
+	 *            the part of speech (may be null)
+	 * @param lemma
+	 *            the lemma (may be null)
+	 * @return the object
+	 */
+	public DBObject word(final String text, final String pos, final String lemma) {
+		final BasicDBObject o = new BasicDBObject().append(field(TEXT), text);
+
+		if (!compact) {
+			o.put(POS, pos);
+			if (lemma != null) {
+				o.put(LEMMA, lemma);
+			}
+		} else {
+			if (pos != null) {
+				o.put(field(POS), encode(POS, pos));
+			}
+			if (lemma != null && !lemma.equals(text)) {
+				o.put(field(LEMMA), lemma);
+			}
+		}
+
+		return o;
+	}
+
+	/**
+	 * Read the words of a saved pattern (in either form).
+	 *
+	 * For the compact form a missing lemma is returned as the word text.
+	 *
+	 * @param pattern
+	 *            the pattern document
+	 * @return the words (empty if none)
+	 */
+	public List<SavedWord> readWords(final DBObject pattern) {
+		if (pattern.containsField(WORDS)) {
+			return readWords((BasicDBList) pattern.get(WORDS), false);
+		} else if (pattern.containsField(COMPACT_FIELDS.get(WORDS))) {
+			return readWords((BasicDBList) pattern.get(COMPACT_FIELDS.get(WORDS)), true);
+		} else {
+			return Collections.emptyList();
+		}
+	}
+
+	private List<SavedWord> readWords(final BasicDBList list, final boolean compactWords) {
+		final List<SavedWord> words = new ArrayList<>(list.size());
+		for (final Object w : list) {
+			final DBObject o = (DBObject) w;
+
+			if (compactWords) {
+				final String text = (String) o.get(COMPACT_FIELDS.get(TEXT));
+				final Object pos = o.get(COMPACT_FIELDS.get(POS));
+				final String lemma = (String) o.get(COMPACT_FIELDS.get(LEMMA));
+				words.add(new SavedWord(text, pos == null ? null : values.get(((Number) pos).intValue()),
+						lemma == null ? text : lemma));
+			} else {
+				words.add(new SavedWord((String) o.get(TEXT), (String) o.get(POS), (String) o.get(LEMMA)));
+			}
+		}
+		return words;
+	}
+
+	private synchronized int encode(final String kind, final String value) {
+		final Integer existing = ids.computeIfAbsent(kind, k -> new HashMap<>()).get(value);
+		if (existing != null) {
+			return existing;
+		}
+
+		final DBObject entry = new BasicDBObject(DICTIONARY_KIND, kind).append(DICTIONARY_VALUE, value);
+
+		// Another writer may have added the value since the dictionary was loaded
+		DBObject saved = dictionary.findOne(entry);
+		if (saved == null) {
+			final int id = allocateId();
+			try {
+				dictionary.insert(new BasicDBObject("_id", id).append(DICTIONARY_KIND, kind)
+						.append(DICTIONARY_VALUE, value));
+				cache(id, kind, value);
+				return id;
+			} catch (final DuplicateKeyException e) {
+				// Added by another writer in the meantime (the id allocated is not used)
+				saved = dictionary.findOne(entry);
+			}
+		}
+
+		final int id = ((Number) saved.get("_id")).intValue();
+		cache(id, kind, value);
+		return id;
+	}
+
+	private int allocateId() {
+		final DBObject counter = dictionary.findAndModify(new BasicDBObject("_id", COUNTER_ID), null, null, false,
+				new BasicDBObject("$inc", new BasicDBObject(COUNTER_NEXT, 1)), false, false);
+		return ((Number) counter.get(COUNTER_NEXT)).intValue();
+	}
+
+	private void cache(final int id, final String kind, final String value) {
+		ids.computeIfAbsent(kind, k -> new HashMap<>()).put(value, id);
+		values.put(id, value);
+	}
+
+	// Ensure the index and counter used to add to the dictionary exist, the counter starting after
+	// any ids in a dictionary written before it was used
+	private void prepareDictionary(final int nextId) {
+		dictionary.createIndex(new BasicDBObject(DICTIONARY_KIND, 1).append(DICTIONARY_VALUE, 1),
+				new BasicDBObject("unique", true));
+		dictionary.update(new BasicDBObject("_id", COUNTER_ID),
+				new BasicDBObject("$max", new BasicDBObject(COUNTER_NEXT, nextId)), true, false);
+	}
+
+	/**
+	 * The schema for writing the full form.
+	 *
+	 * @return the schema
+	 */
+	public static PatternSchema full() {
+		return new PatternSchema(false, null);
+	}
+
+	/**
+	 * The schema for writing the compact form.
+	 *
+	 * @param dictionary
+	 *            the dictionary collection
+	 * @return the schema
+	 */
+	public static PatternSchema compact(final DBCollection dictionary) {
+		return new PatternSchema(true, dictionary);
+	}
+
+	/**
+	 * The schema for reading patterns (of either form).
+	 *
+	 * @param dictionary
+	 *            the dictionary collection
+	 * @return the schema
+	 */
+	public static PatternSchema read(final DBCollection dictionary) {
+		return new PatternSchema(false, dictionary);
+	}
+}
@@ -0,0 +1,67 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calculates a compact signature of a pattern from the lemmas of its words.
+ *
+ * The signature is the hashed ids of every n-gram (of length 1 to n) of the lemmas, in sorted order
+ * (so repeated n-grams appear multiple times). The id of an n-gram is the String hashCode of its
+ * lemmas joined by a single space, so it can be reproduced by any consumer of the signature without
+ * the need for a shared dictionary.
+ *
+ * Computing this once, when the patterns are saved, saves offline jobs from re-tokenising the
+ * patterns.
+ */
+public final class PatternSignature {
+
+	private PatternSignature() {
+		// Singleton
+	}
+
+	/**
+	 * Calculate the signature of the lemmas.
+	 *
+	 * @param lemmas
+	 *            the lemmas (normalised, eg lower case)
+	 * @param n
+	 *            the largest n-gram size (at least 1)
+	 * @return the sorted n-gram ids (empty if no lemmas)
+	 */
+	public static int[] calculate(final List<String> lemmas, final int n) {
+		final int size = lemmas.size();
+		final int max = Math.min(n, size);
+
+		// There are size - k + 1 n-grams of length k
+		int count = 0;
+		for (int k = 1; k <= max; k++) {
+			count += size - k + 1;
+		}
+
+		final int[] signature = new int[count];
+		int i = 0;
+		for (int start = 0; start < size; start++) {
+			int hash = 0;
+			for (int end = start; end < size && end - start < max; end++) {
+				if (end > start) {
+					hash = 31 * hash + ' ';
+				}
+				hash = appendHash(hash, lemmas.get(end));
+				signature[i++] = hash;
+			}
+		}
+
+		Arrays.sort(signature);
+		return signature;
+	}
+
+	// Continue the String.hashCode calculation with the characters of the text
+	private static int appendHash(final int hash, final String text) {
+		int h = hash;
+		for (int i = 0; i < text.length(); i++) {
+			h = 31 * h + text.charAt(i);
+		}
+		return h;
+	}
+}
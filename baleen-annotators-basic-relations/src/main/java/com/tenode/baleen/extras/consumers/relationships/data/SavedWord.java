@@ -0,0 +1,57 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+/**
+ * A word of a pattern as read back from a saved pattern document.
+ */
+public final class SavedWord {
+
+	private final String text;
+
+	private final String pos;
+
+	private final String lemma;
+
+	/**
+	 * Instantiates a new saved word.
+	 *
+	 * @param text
+	 *            the text
+	 * @param pos
+	 *            the part of speech (may be null)
+	 * @param lemma
+	 *            the lemma (may be null)
+	 */
+	public SavedWord(final String text, final String pos, final String lemma) {
+		this.text = text;
+		this.pos = pos;
+		this.lemma = lemma;
+	}
+
+	/**
+	 * Gets the text.
+	 *
+	 * @return the text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Gets the part of speech.
+	 *
+	 * @return the pos (may be null)
+	 */
+	public String getPos() {
+		return pos;
+	}
+
+	/**
+	 * Gets the lemma.
+	 *
+	 * @return the lemma (may be null)
+	 */
+	public String getLemma() {
+		return lemma;
+	}
+
+}
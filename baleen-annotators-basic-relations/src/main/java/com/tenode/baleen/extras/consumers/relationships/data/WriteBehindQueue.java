@@ -0,0 +1,282 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+import uk.gov.dstl.baleen.uima.UimaMonitor;
+
+/**
+ * Writes objects to a Mongo collection from a dedicated thread.
+ *
+ * Objects are put on a bounded queue, which the writer thread drains in batches (of up to
+ * batchSize, written with an unordered bulk insert). If the queue is full put() blocks until there
+ * is space, so a slow database slows the pipeline rather than exhausting memory.
+ *
+ * A batch which Mongo fails to write is logged and counted, and the writer moves on. Any other
+ * error stops the writer thread, after which put() and close() throw an IllegalStateException
+ * rather than waiting on a queue which will never be drained.
+ *
+ * The queue should be used by a single producer thread. close() writes everything remaining on the
+ * queue before returning, after which nothing more should be put.
+ *
+ * The time taken by each write is recorded in a timer, and the queue depth after each put in a
+ * histogram, so they can be published as metrics (see MongoPatternSaver). The totals are also
+ * available from the getters and are logged on close.
+ */
+public final class WriteBehindQueue {
+
+	private static final long POLL_MILLIS = 100;
+
+	private final DBCollection collection;
+
+	private final BlockingQueue<DBObject> queue;
+
+	private final int batchSize;
+
+	private final UimaMonitor monitor;
+
+	private final Thread writer;
+
+	private volatile boolean closed = false;
+
+	private volatile RuntimeException failure = null;
+
+	private long maxDepth = 0;
+
+	private long blockedPuts = 0;
+
+	private final AtomicLong written = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final AtomicLong writes = new AtomicLong();
+
+	private final AtomicLong writeNanos = new AtomicLong();
+
+	private final Timer writeTimer;
+
+	private final Histogram depthHistogram;
+
+	/**
+	 * Instantiates a new write behind queue, without publishing metrics, and starts the writer
+	 * thread.
+	 *
+	 * @param collection
+	 *            the collection to write to
+	 * @param capacity
+	 *            the maximum number of objects waiting to be written
+	 * @param batchSize
+	 *            the maximum number of objects written together
+	 * @param monitor
+	 *            the monitor to log to
+	 */
+	public WriteBehindQueue(final DBCollection collection, final int capacity, final int batchSize,
+			final UimaMonitor monitor) {
+		this(collection, capacity, batchSize, monitor, new Timer(),
+				new Histogram(new ExponentiallyDecayingReservoir()));
+	}
+
+	/**
+	 * Instantiates a new write behind queue, and starts the writer thread.
+	 *
+	 * @param collection
+	 *            the collection to write to
+	 * @param capacity
+	 *            the maximum number of objects waiting to be written
+	 * @param batchSize
+	 *            the maximum number of objects written together
+	 * @param monitor
+	 *            the monitor to log to
+	 * @param writeTimer
+	 *            the timer to record the latency of each write (of a batch) in
+	 * @param depthHistogram
+	 *            the histogram to record the queue depth after each put in
+	 */
+	public WriteBehindQueue(final DBCollection collection, final int capacity, final int batchSize,
+			final UimaMonitor monitor, final Timer writeTimer, final Histogram depthHistogram) {
+		this.collection = collection;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.monitor = monitor;
+		this.writeTimer = writeTimer;
+		this.depthHistogram = depthHistogram;
+
+		writer = new Thread(this::run, "write-behind-" + collection.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Put an object on the queue to be written, waiting if the queue is full.
+	 *
+	 * @param object
+	 *            the object
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws IllegalStateException
+	 *             if the writer thread has stopped
+	 */
+	public void put(final DBObject object) throws InterruptedException {
+		checkWriter();
+
+		if (!queue.offer(object)) {
+			blockedPuts++;
+			while (!queue.offer(object, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				checkWriter();
+			}
+		}
+
+		final int depth = queue.size();
+		depthHistogram.update(depth);
+		maxDepth = Math.max(maxDepth, depth);
+	}
+
+	/**
+	 * The number of objects currently waiting to be written.
+	 *
+	 * @return the queue depth
+	 */
+	public int getDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * The number of objects which have been written.
+	 *
+	 * @return the count
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * The number of objects which could not be written.
+	 *
+	 * @return the count
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * The mean time taken for a write (of a batch) to Mongo.
+	 *
+	 * @return the latency in milliseconds (0 if there have been no writes)
+	 */
+	public double getMeanWriteLatency() {
+		final long count = writes.get();
+		return count == 0 ? 0 : writeNanos.get() / (count * 1000000.0);
+	}
+
+	/**
+	 * Write everything on the queue and stop the writer thread.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the writer
+	 * @throws IllegalStateException
+	 *             if the writer thread stopped before everything was written
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		writer.join();
+
+		monitor.info(
+				"Wrote {} objects to {} in {} writes (mean latency {} ms), max queue depth {}, {} blocked puts, {} failed",
+				written.get(), collection.getName(), writes.get(), getMeanWriteLatency(), maxDepth, blockedPuts,
+				failed.get());
+
+		if (failure != null) {
+			throw new IllegalStateException(
+					"Writer for " + collection.getName() + " failed, " + queue.size() + " objects not written", failure);
+		}
+	}
+
+	private void checkWriter() {
+		if (failure != null) {
+			throw new IllegalStateException("Writer for " + collection.getName() + " failed", failure);
+		} else if (!writer.isAlive()) {
+			throw new IllegalStateException("Writer for " + collection.getName() + " has stopped");
+		}
+	}
+
+	private void run() {
+		try {
+			drain();
+		} catch (final RuntimeException e) {
+			failure = e;
+			monitor.error("Writer for {} failed, {} objects waiting", collection.getName(), queue.size(), e);
+		}
+	}
+
+	private void drain() {
+		final List<DBObject> batch = new ArrayList<>(batchSize);
+		boolean interrupted = false;
+
+		while (true) {
+			DBObject first = null;
+			if (interrupted) {
+				first = queue.poll();
+			} else {
+				try {
+					first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (final InterruptedException e) {
+					// Write what we have and finish
+					interrupted = true;
+					continue;
+				}
+			}
+
+			if (first == null) {
+				if (closed || interrupted) {
+					break;
+				}
+				continue;
+			}
+
+			batch.add(first);
+			queue.drainTo(batch, batchSize - 1);
+			write(batch);
+			batch.clear();
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void write(final List<DBObject> batch) {
+		final long start = System.nanoTime();
+		try {
+			final BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+			batch.forEach(bulk::insert);
+			bulk.execute();
+			written.addAndGet(batch.size());
+		} catch (final MongoException e) {
+			failed.addAndGet(batch.size());
+			monitor.error("Unable to write {} objects to {}", batch.size(), collection.getName(), e);
+		} catch (final RuntimeException e) {
+			// Not a database error, so stop the writer (see run)
+			failed.addAndGet(batch.size());
+			throw e;
+		} finally {
+			final long elapsed = System.nanoTime() - start;
+			writes.incrementAndGet();
+			writeNanos.addAndGet(elapsed);
+			writeTimer.update(elapsed, TimeUnit.NANOSECONDS);
+		}
+
+		monitor.debug("Wrote {} objects to {}, {} waiting", batch.size(), collection.getName(), queue.size());
+	}
+}
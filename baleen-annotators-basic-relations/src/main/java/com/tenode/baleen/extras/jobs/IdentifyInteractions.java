@@ -1,6 +1,6 @@
 package com.tenode.baleen.extras.jobs;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -9,13 +9,12 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.ExternalResource;
 
-import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
-import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.tenode.baleen.extras.consumers.relationships.MongoPatternSaver;
-import com.tenode.baleen.extras.jobs.interactions.InteractionIdentifier;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternSchema;
+import com.tenode.baleen.extras.jobs.interactions.AbstractInteractionIdentificationTask;
 import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
 import com.tenode.baleen.extras.jobs.interactions.data.Word;
 import com.tenode.baleen.wordnet.WordNetUtils;
@@ -23,16 +22,15 @@ import com.tenode.baleen.wordnet.resources.WordNetResource;
 
 import net.sf.extjwnl.dictionary.Dictionary;
 import uk.gov.dstl.baleen.resources.SharedMongoResource;
-import uk.gov.dstl.baleen.uima.jobs.BaleenTask;
 import uk.gov.dstl.baleen.uima.jobs.JobSettings;
 
 /**
- * Identifity Interaction words based on a mongo collection of patterns.
+ * Identifity Interaction words based on a mongo collection (or a directory of files) of patterns.
  *
  * This requires a wordnet dictionary and a mongo resource. The mongo collection should hold
- * patterns which have been extracted by a pipeline @see MongoPatternSaver containing.
+ * patterns which have been extracted by a pipeline containing the {@link MongoPatternSaver}.
  */
-public class IdentifyInteractions extends BaleenTask {
+public class IdentifyInteractions extends AbstractInteractionIdentificationTask {
 
 	/**
 	 * Connection to Wordnet
@@ -61,6 +59,15 @@ public class IdentifyInteractions extends BaleenTask {
 	@ConfigurationParameter(name = KEY_PATTERN_COLLECTION, defaultValue = "patterns")
 	private String patternCollection;
 
+	/**
+	 * The name of the Mongo collection which holds the dictionary for compact patterns.
+	 *
+	 * @baleen.config patternDictionary
+	 */
+	public static final String KEY_DICTIONARY_COLLECTION = "dictionaryCollection";
+	@ConfigurationParameter(name = KEY_DICTIONARY_COLLECTION, defaultValue = "patternDictionary")
+	private String dictionaryCollection;
+
 	/**
 	 * The name of the Mongo collection to output the words to
 	 *
@@ -82,57 +89,50 @@ public class IdentifyInteractions extends BaleenTask {
 	/**
 	 * The similarity threshold between two patterns (before they are consider the same)
 	 *
+	 * This is also used if estimateThreshold is set but no estimate can be made.
+	 *
 	 * @baleen.config patterns 0.2
 	 */
 	public static final String KEY_THRESHOLD = "threshold";
-	@ConfigurationParameter(name = MongoPatternSaver.KEY_COLLECTION, defaultValue = "0.2")
+	@ConfigurationParameter(name = KEY_THRESHOLD, defaultValue = "0.2")
 	private double threshold;
 
 	@Override
 	protected void execute(JobSettings settings) throws AnalysisEngineProcessException {
 
 		Dictionary dictionary = wordnet.getDictionary();
-		InteractionIdentifier identifier = new InteractionIdentifier(minPatternsInCluster, threshold, dictionary);
-		List<PatternReference> patterns = readPatternsFromMongo();
-		Stream<String> words = identifier.process(patterns);
+		Stream<String> words = identifyInteractions(minPatternsInCluster, threshold, dictionary);
 		writeWordsToMongo(words);
 
 	}
 
-	private List<PatternReference> readPatternsFromMongo() {
-		// TODO: Ideally this would do something in a more streaming manner, as there are likely to
-		// be lots of examples
-
+	@Override
+	protected Stream<PatternReference> readPatterns() throws IOException {
 		DBCollection collection = mongo.getDB().getCollection(patternCollection);
+		PatternSchema schema = isReadingPatternFiles() ? PatternSchema.full()
+				: PatternSchema.read(mongo.getDB().getCollection(dictionaryCollection));
 
-		List<PatternReference> patterns = new ArrayList<>((int) collection.count());
-
-		DBCursor cursor = collection.find();
-		while (cursor.hasNext()) {
-			DBObject o = cursor.next();
-			// TODO: We don't currently use types (entity source target) but we could do
-			// at least to output something to the relationship type filter
-
-			BasicDBList list = (BasicDBList) o.get("words");
-			List<Word> tokens = list.stream().map(l -> {
-				BasicDBObject dbo = (BasicDBObject) l;
-				String pos = dbo.getString("pos");
-				String lemma = dbo.getString("lemma");
+		return readPatternObjects(collection).map(o -> toPatternReference(schema, o));
+	}
 
-				// Fall back to actual text if no lemma
-				if (lemma == null) {
-					lemma = dbo.getString("text");
-				}
+	private PatternReference toPatternReference(PatternSchema schema, DBObject o) {
+		// TODO: We don't currently use types (entity source target) but we could do
+		// at least to output something to the relationship type filter
 
-				return new Word(lemma.trim().toLowerCase(), WordNetUtils.toPos(pos));
-			}).filter(w -> w.getPos() != null)
-					.collect(Collectors.toList());
+		List<Word> tokens = schema.readWords(o).stream().map(w -> {
+			String pos = w.getPos();
+			String lemma = w.getLemma();
 
-			patterns.add(new PatternReference(o.get("_id").toString(), tokens));
-		}
+			// Fall back to actual text if no lemma
+			if (lemma == null) {
+				lemma = w.getText();
+			}
 
-		return patterns;
+			return new Word(lemma.trim().toLowerCase(), WordNetUtils.toPos(pos));
+		}).filter(w -> w.getPos() != null)
+				.collect(Collectors.toList());
 
+		return new PatternReference(o.get("_id").toString(), tokens);
 	}
 
 	private void writeWordsToMongo(Stream<String> words) {
@@ -0,0 +1,188 @@
+package com.tenode.baleen.extras.jobs.interactions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternFileReader;
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+
+import net.sf.extjwnl.dictionary.Dictionary;
+import uk.gov.dstl.baleen.uima.jobs.BaleenTask;
+
+/**
+ * Base for tasks which cluster patterns (from Mongo or a directory of files) with an
+ * InteractionIdentifier to find interaction words.
+ *
+ * This holds the configuration for reading the patterns and for the clustering itself, other than
+ * the threshold and minimum cluster size, which subclasses define.
+ */
+public abstract class AbstractInteractionIdentificationTask extends BaleenTask {
+
+	/**
+	 * The directory of pattern files (as created by the FilePatternSaver) to read the patterns from,
+	 * in place of the pattern collection.
+	 *
+	 * The interaction words are still output to Mongo.
+	 *
+	 * @baleen.config
+	 */
+	public static final String KEY_PATTERN_DIRECTORY = "patternDirectory";
+	@ConfigurationParameter(name = KEY_PATTERN_DIRECTORY, defaultValue = "")
+	private String patternDirectory;
+
+	/**
+	 * Estimate the similarity threshold from a sample of the patterns (see ThresholdEstimator),
+	 * rather than using the threshold given.
+	 *
+	 * @baleen.config false
+	 */
+	public static final String KEY_ESTIMATE_THRESHOLD = "estimateThreshold";
+	@ConfigurationParameter(name = KEY_ESTIMATE_THRESHOLD, defaultValue = "false")
+	private boolean estimateThreshold;
+
+	/**
+	 * The quantile of the sampled pattern similarities used as the threshold, when it is estimated.
+	 *
+	 * Higher values produce more, smaller clusters.
+	 *
+	 * @baleen.config 0.5
+	 */
+	public static final String KEY_THRESHOLD_QUANTILE = "thresholdQuantile";
+	@ConfigurationParameter(name = KEY_THRESHOLD_QUANTILE, defaultValue = "0.5")
+	private double thresholdQuantile;
+
+	/**
+	 * The number of pairs of patterns to sample, when the threshold is estimated.
+	 *
+	 * @baleen.config 10000
+	 */
+	public static final String KEY_THRESHOLD_SAMPLE = "thresholdSample";
+	@ConfigurationParameter(name = KEY_THRESHOLD_SAMPLE, defaultValue = "10000")
+	private int thresholdSample;
+
+	/**
+	 * The number of threads used to score the clusters for each pattern (0 for the number of
+	 * processors).
+	 *
+	 * The clusters produced are the same whatever the parallelism. Only patterns with many candidate
+	 * clusters are scored in parallel.
+	 *
+	 * @baleen.config 1
+	 */
+	public static final String KEY_PARALLELISM = "parallelism";
+	@ConfigurationParameter(name = KEY_PARALLELISM, defaultValue = "1")
+	private int parallelism;
+
+	/**
+	 * The number of patterns to read and cluster at a time (0 to read all the patterns into
+	 * memory first).
+	 *
+	 * With a batch size the clusters hold only a summary of their patterns, so collections larger
+	 * than memory can be processed. See InteractionIdentifier.
+	 *
+	 * @baleen.config 0
+	 */
+	public static final String KEY_BATCH_SIZE = "batchSize";
+	@ConfigurationParameter(name = KEY_BATCH_SIZE, defaultValue = "0")
+	private int batchSize;
+
+	/**
+	 * The number of passes over the patterns, when reading them in batches.
+	 *
+	 * Each pass after the first refines the clusters of the previous pass.
+	 *
+	 * @baleen.config 1
+	 */
+	public static final String KEY_PASSES = "passes";
+	@ConfigurationParameter(name = KEY_PASSES, defaultValue = "1")
+	private int passes;
+
+	/**
+	 * Read the patterns to cluster.
+	 *
+	 * This may be called more than once (when reading in batches over several passes), and the
+	 * stream returned is closed once it has been read.
+	 *
+	 * @return the patterns
+	 * @throws IOException
+	 *             if the patterns can not be read
+	 */
+	protected abstract Stream<PatternReference> readPatterns() throws IOException;
+
+	/**
+	 * Cluster the patterns (see readPatterns) and find the interaction words.
+	 *
+	 * @param minPatternsInCluster
+	 *            the minimum number of patterns in a cluster
+	 * @param threshold
+	 *            the similarity threshold (used if the threshold is not, or can not be, estimated)
+	 * @param dictionary
+	 *            the WordNet dictionary
+	 * @return the interaction words
+	 * @throws AnalysisEngineProcessException
+	 *             if the patterns can not be read
+	 */
+	protected Stream<String> identifyInteractions(int minPatternsInCluster, double threshold, Dictionary dictionary)
+			throws AnalysisEngineProcessException {
+		ThresholdEstimator estimator = estimateThreshold
+				? new ThresholdEstimator(thresholdSample, thresholdQuantile, 0) : null;
+		InteractionIdentifier identifier = new InteractionIdentifier(minPatternsInCluster, threshold, dictionary,
+				parallelism, estimator);
+
+		try {
+			if (batchSize > 0) {
+				return identifier.process(() -> {
+					try {
+						return readPatterns();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, batchSize, passes);
+			} else {
+				try (Stream<PatternReference> patterns = readPatterns()) {
+					return identifier.process(patterns.collect(Collectors.toList()));
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+	}
+
+	/**
+	 * Whether the patterns are read from a directory of files, rather than Mongo.
+	 *
+	 * @return true if reading files
+	 */
+	protected boolean isReadingPatternFiles() {
+		return !patternDirectory.isEmpty();
+	}
+
+	/**
+	 * Read the pattern objects, from the pattern directory if there is one or otherwise the
+	 * collection given.
+	 *
+	 * @param patternCollection
+	 *            the pattern collection (unused, and may be null, if reading files)
+	 * @return the objects
+	 * @throws IOException
+	 *             if the pattern files can not be read
+	 */
+	protected Stream<DBObject> readPatternObjects(DBCollection patternCollection) throws IOException {
+		if (isReadingPatternFiles()) {
+			return PatternFileReader.read(Paths.get(patternDirectory));
+		} else {
+			DBCursor cursor = patternCollection.find();
+			return StreamSupport.stream(cursor.spliterator(), false).onClose(cursor::close);
+		}
+	}
+}
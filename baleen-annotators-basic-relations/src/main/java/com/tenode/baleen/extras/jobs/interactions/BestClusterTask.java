@@ -0,0 +1,126 @@
+package com.tenode.baleen.extras.jobs.interactions;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Finds the cluster most similar to a pattern, from a list of candidate clusters.
+ *
+ * The similarity of the pattern to each cluster is given by a function of the cluster index.
+ *
+ * Large candidate lists are split in half and scored in parallel (when invoked in a fork join
+ * pool). The result is the same as scoring the candidates in order: the first candidate with the
+ * highest score wins ties, and NaN scores are never chosen.
+ */
+final class BestClusterTask extends RecursiveTask<BestClusterTask.Best> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int CHUNK_SIZE = 512;
+
+	private final IntToDoubleFunction similarity;
+
+	private final int[] candidates;
+
+	private final int from;
+
+	private final int to;
+
+	/**
+	 * Instantiates a new task.
+	 *
+	 * @param similarity
+	 *            the similarity of the pattern to a cluster (by index)
+	 * @param candidates
+	 *            the indexes of the clusters to score, in ascending order
+	 * @param from
+	 *            the first candidate to score (inclusive)
+	 * @param to
+	 *            the last candidate to score (exclusive)
+	 */
+	BestClusterTask(IntToDoubleFunction similarity, int[] candidates, int from, int to) {
+		this.similarity = similarity;
+		this.candidates = candidates;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected Best compute() {
+		if (to - from <= CHUNK_SIZE) {
+			return score(similarity, candidates, from, to);
+		}
+
+		int middle = (from + to) >>> 1;
+		BestClusterTask left = new BestClusterTask(similarity, candidates, from, middle);
+		BestClusterTask right = new BestClusterTask(similarity, candidates, middle, to);
+		left.fork();
+		Best rightBest = right.compute();
+		Best leftBest = left.join();
+
+		// Strictly greater, so the earlier candidate wins a tie
+		return rightBest.getScore() > leftBest.getScore() ? rightBest : leftBest;
+	}
+
+	/**
+	 * Score the candidates in order, on the current thread.
+	 *
+	 * @param similarity
+	 *            the similarity of the pattern to a cluster (by index)
+	 * @param candidates
+	 *            the indexes of the clusters to score, in ascending order
+	 * @param from
+	 *            the first candidate to score (inclusive)
+	 * @param to
+	 *            the last candidate to score (exclusive)
+	 * @return the best cluster
+	 */
+	static Best score(IntToDoubleFunction similarity, int[] candidates, int from, int to) {
+		double maxScore = Double.NEGATIVE_INFINITY;
+		int bestCluster = -1;
+
+		for (int i = from; i < to; i++) {
+			double score = similarity.applyAsDouble(candidates[i]);
+
+			if (score > maxScore) {
+				maxScore = score;
+				bestCluster = candidates[i];
+			}
+		}
+
+		return new Best(bestCluster, maxScore);
+	}
+
+	/**
+	 * The best cluster found and its score.
+	 */
+	static final class Best {
+
+		private final int cluster;
+
+		private final double score;
+
+		Best(int cluster, double score) {
+			this.cluster = cluster;
+			this.score = score;
+		}
+
+		/**
+		 * The index of the cluster.
+		 *
+		 * @return the cluster index (-1 if none)
+		 */
+		int getCluster() {
+			return cluster;
+		}
+
+		/**
+		 * The similarity of the pattern to the cluster.
+		 *
+		 * @return the score (negative infinity if none)
+		 */
+		double getScore() {
+			return score;
+		}
+	}
+}
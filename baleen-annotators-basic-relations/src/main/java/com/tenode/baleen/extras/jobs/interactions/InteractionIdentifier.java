@@ -2,16 +2,26 @@ package com.tenode.baleen.extras.jobs.interactions;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tenode.baleen.extras.jobs.interactions.data.Centroid;
+import com.tenode.baleen.extras.jobs.interactions.data.ClusterIndex;
 import com.tenode.baleen.extras.jobs.interactions.data.ClusteredPatterns;
 import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+import com.tenode.baleen.extras.jobs.interactions.data.StreamedCluster;
 import com.tenode.baleen.extras.jobs.interactions.data.Word;
 
 import net.sf.extjwnl.JWNLException;
@@ -21,19 +31,68 @@ import net.sf.extjwnl.dictionary.Dictionary;
 
 public class InteractionIdentifier {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(InteractionIdentifier.class);
+
+	// The number of candidate clusters before scoring is split across threads
+	private static final int PARALLEL_CANDIDATES = 2048;
+
 	private final int minPatternsInCluster;
 	private final double threshold;
 	private final Dictionary dictionary;
+	private final int parallelism;
+	private final ThresholdEstimator thresholdEstimator;
 
 	public InteractionIdentifier(int minPatternsInCluster, double threshold, Dictionary dictionary) {
+		this(minPatternsInCluster, threshold, dictionary, 1);
+	}
+
+	/**
+	 * Instantiates a new interaction identifier.
+	 *
+	 * @param minPatternsInCluster
+	 *            the minimum number of patterns in a cluster
+	 * @param threshold
+	 *            the similarity threshold
+	 * @param dictionary
+	 *            the wordnet dictionary
+	 * @param parallelism
+	 *            the number of threads used to score clusters (1 for the calling thread only, 0 for
+	 *            the number of processors). The clusters are the same whatever the parallelism.
+	 */
+	public InteractionIdentifier(int minPatternsInCluster, double threshold, Dictionary dictionary,
+			int parallelism) {
+		this(minPatternsInCluster, threshold, dictionary, parallelism, null);
+	}
+
+	/**
+	 * Instantiates a new interaction identifier.
+	 *
+	 * @param minPatternsInCluster
+	 *            the minimum number of patterns in a cluster
+	 * @param threshold
+	 *            the similarity threshold (used if there is no estimator, or it is unable to make an
+	 *            estimate)
+	 * @param dictionary
+	 *            the wordnet dictionary
+	 * @param parallelism
+	 *            the number of threads used to score clusters (1 for the calling thread only, 0 for
+	 *            the number of processors)
+	 * @param thresholdEstimator
+	 *            the estimator used to estimate the threshold from the patterns (null to use the
+	 *            threshold given)
+	 */
+	public InteractionIdentifier(int minPatternsInCluster, double threshold, Dictionary dictionary,
+			int parallelism, ThresholdEstimator thresholdEstimator) {
 		this.minPatternsInCluster = minPatternsInCluster;
 		this.threshold = threshold;
 		this.dictionary = dictionary;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.thresholdEstimator = thresholdEstimator;
 	}
 
 	public Stream<String> process(List<PatternReference> patterns) {
 
-		Set<Word> terms = gatherTerms(patterns);
+		Map<String, Integer> terms = new HashMap<>();
 
 		calculateTermFrequencies(patterns, terms);
 
@@ -41,33 +100,141 @@ public class InteractionIdentifier {
 		sort(patterns);
 
 		// Cluster
-		List<ClusteredPatterns> clusters = cluster(patterns);
+		List<ClusteredPatterns> clusters;
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			clusters = cluster(patterns, pool);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
 
 		// Remove small clusters
 		filterClusters(clusters);
 
-		clusters.forEach(c -> {
-			System.out.println("-----------------");
-			c.getPatterns().forEach(p -> System.out.println(p));
-		});
+		if (LOGGER.isDebugEnabled()) {
+			for (int i = 0; i < clusters.size(); i++) {
+				LOGGER.debug("Cluster {} of {} patterns: {}", i, clusters.get(i).size(), clusters.get(i).getPatterns());
+			}
+		}
 
 		// Find interaction words
-		return extractInteractionWords(clusters);
+		// TODO: Should we use token or terms here?
+		return extractInteractionWords(clusters.stream().map(cluster -> cluster.getPatterns().stream()
+				.flatMap(p -> p.getTokens().stream())
+				.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))));
 
 	}
 
-	private Stream<String> extractInteractionWords(List<ClusteredPatterns> clusters) {
-		Stream<Word> distinctWords = clusters.stream().flatMap(cluster -> {
-			// TODO: Should we use token or terms here?
-			Map<Word, Long> wordCount = cluster.getPatterns().stream()
-					.flatMap(p -> p.getTokens().stream())
-					.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+	/**
+	 * Identify interaction words from patterns which are read in batches, rather than held in
+	 * memory.
+	 *
+	 * Each batch is sorted (by the number of terms) and then clustered greedily as in
+	 * process(List), against all the clusters so far. The clusters only hold the centroid and word
+	 * counts of their patterns, so memory depends on the batch size and number of clusters but not
+	 * the number of patterns. With a single pass and a batch larger than the number of patterns this
+	 * gives the same clusters as process(List).
+	 *
+	 * Later passes read the patterns again, scoring them against the centroids of the clusters from
+	 * the previous pass (and any new clusters created in this pass). This reduces the dependence
+	 * of the result on the order of the patterns. The clusters of the last pass are used.
+	 *
+	 * If the threshold is to be estimated, it is estimated from the first batch.
+	 *
+	 * @param patterns
+	 *            supplies a new stream of the patterns for each pass (the stream is closed after
+	 *            use)
+	 * @param batchSize
+	 *            the number of patterns held in memory at once
+	 * @param passes
+	 *            the number of passes over the patterns (at least 1)
+	 * @return the interaction words
+	 */
+	public Stream<String> process(Supplier<Stream<PatternReference>> patterns, int batchSize, int passes) {
+		Map<String, Integer> terms = new HashMap<>();
+		List<Centroid> seeds = Collections.emptyList();
+		List<StreamedCluster> clusters = new ArrayList<>();
+		double threshold = Double.NaN;
+
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			for (int pass = 0; pass < Math.max(1, passes); pass++) {
+				clusters = new ArrayList<>(seeds.size());
+				ClusterIndex index = new ClusterIndex();
+				for (Centroid seed : seeds) {
+					clusters.add(new StreamedCluster(seed));
+					index.addCluster(seed.getTermIds());
+				}
+
+				List<PatternReference> batch = new ArrayList<>(Math.max(1, batchSize));
+				try (Stream<PatternReference> stream = patterns.get()) {
+					Iterator<PatternReference> iterator = stream.iterator();
+					while (iterator.hasNext()) {
+						batch.add(iterator.next());
+
+						if (batch.size() >= batchSize || !iterator.hasNext()) {
+							calculateTermFrequencies(batch, terms);
+							sort(batch);
+
+							if (Double.isNaN(threshold)) {
+								threshold = calculateThreshold(batch);
+							}
+
+							for (PatternReference pr : batch) {
+								assign(clusters, index, pr, threshold, pool);
+							}
+							batch.clear();
+						}
+					}
+				}
+
+				seeds = clusters.stream()
+						.filter(c -> c.size() > 0)
+						.map(StreamedCluster::getCentroid)
+						.collect(Collectors.toList());
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		// Remove small clusters
+		if (minPatternsInCluster != 0) {
+			clusters.removeIf(c -> c.size() < minPatternsInCluster);
+		}
+
+		// Find interaction words
+		return extractInteractionWords(clusters.stream().map(StreamedCluster::getWordCounts));
+	}
 
-			return wordCount.entrySet().stream()
-					.filter(e -> e.getValue() >= 2)
-					.map(e -> e.getKey());
+	private void assign(List<StreamedCluster> clusters, ClusterIndex index, PatternReference pr, double threshold,
+			ForkJoinPool pool) {
+		int best = findBestCluster(c -> clusters.get(c).calculateSimilarity(pr), clusters.size(), index, pr,
+				threshold, pool);
+
+		if (best != -1) {
+			StreamedCluster cluster = clusters.get(best);
+			cluster.add(pr);
+			// Seeded clusters are scored (and so indexed) on their seed terms only
+			if (!cluster.isSeeded()) {
+				index.add(best, pr);
+			}
+		} else {
+			StreamedCluster cluster = new StreamedCluster();
+			cluster.add(pr);
+			clusters.add(cluster);
+			index.addCluster(pr);
+		}
+	}
 
-		}).filter(w -> w.getPos() == POS.NOUN || w.getPos() == POS.VERB).distinct();
+	private Stream<String> extractInteractionWords(Stream<Map<Word, Long>> clusterWordCounts) {
+		Stream<Word> distinctWords = clusterWordCounts.flatMap(wordCount -> wordCount.entrySet().stream()
+				.filter(e -> e.getValue() >= 2)
+				.map(e -> e.getKey()))
+				.filter(w -> w.getPos() == POS.NOUN || w.getPos() == POS.VERB).distinct();
 
 		// We need to map verbs and nouns to lemmas (which might have already been done)
 		// Then map verbs to nouns and vice versa.
@@ -96,13 +263,14 @@ public class InteractionIdentifier {
 
 	}
 
-	private Set<Word> gatherTerms(List<PatternReference> patterns) {
-		return patterns.stream()
-				.flatMap(p -> p.getTokens().stream())
-				.collect(Collectors.toSet());
-	}
+	private void calculateTermFrequencies(List<PatternReference> patterns, Map<String, Integer> terms) {
+		// Give each new lemma an id
+		for (PatternReference p : patterns) {
+			for (Word w : p.getTokens()) {
+				terms.putIfAbsent(w.getLemma(), terms.size());
+			}
+		}
 
-	private void calculateTermFrequencies(List<PatternReference> patterns, Set<Word> terms) {
 		patterns.forEach(p -> p.calculateTermFrequency(terms));
 	}
 
@@ -110,47 +278,67 @@ public class InteractionIdentifier {
 		Collections.sort(patterns, (a, b) -> b.getTFMagnitude() - a.getTFMagnitude());
 	}
 
-	private List<ClusteredPatterns> cluster(List<PatternReference> patterns) {
+	private List<ClusteredPatterns> cluster(List<PatternReference> patterns, ForkJoinPool pool) {
 		final List<ClusteredPatterns> clusters = new ArrayList<>();
+		final ClusterIndex index = new ClusterIndex();
 
 		final double threshold = calculateThreshold(patterns);
 
 		for (final PatternReference pr : patterns) {
-			double maxScore = Double.NEGATIVE_INFINITY;
-			ClusteredPatterns bestCluster = null;
-
-			for (final ClusteredPatterns cp : clusters) {
-				double score = cp.calculateSimilarity(pr);
+			final int best = findBestCluster(c -> clusters.get(c).calculateSimilarity(pr), clusters.size(), index,
+					pr, threshold, pool);
 
-				if (score > maxScore) {
-					maxScore = score;
-					bestCluster = cp;
-				}
-			}
-
-			System.out.println(maxScore);
-
-			if (maxScore > threshold && bestCluster != null) {
+			if (best != -1) {
 				// use the existing cluster
-				bestCluster.add(pr);
+				clusters.get(best).add(pr);
+				index.add(best, pr);
 			} else {
 				// Create a new cluster
 				clusters.add(new ClusteredPatterns(pr));
+				index.addCluster(pr);
 			}
 		}
 
 		return clusters;
 	}
 
+	private int findBestCluster(IntToDoubleFunction similarity, int clusterCount, ClusterIndex index,
+			PatternReference pr, double threshold, ForkJoinPool pool) {
+		// A cluster which shares no terms with a pattern scores 0, so it can only be chosen if the
+		// threshold is negative. Otherwise we only need to score the clusters sharing a term.
+		final int[] candidates = threshold >= 0 ? index.getCandidates(pr)
+				: IntStream.range(0, clusterCount).toArray();
+
+		final BestClusterTask.Best best;
+		if (pool != null && candidates.length >= PARALLEL_CANDIDATES) {
+			best = pool.invoke(new BestClusterTask(similarity, candidates, 0, candidates.length));
+		} else {
+			best = BestClusterTask.score(similarity, candidates, 0, candidates.length);
+		}
+
+		return best.getScore() > threshold ? best.getCluster() : -1;
+	}
+
 	private double calculateThreshold(List<PatternReference> patterns) {
-		// TODO:
-		// Paper uses an algorithm which O(number of patterns * 2)
-		// if we do that, it would be nice to cache the result in order to avoid recalcuating the
-		// similarities again
-		// At any rate as is defines the number of clusters which is important to the user it should
-		// be specified
-		// Since we normalize we know this will be in the range (0,1) which helps determine clusters
-		return threshold;
+		// As is defines the number of clusters, which is important to the user, it should normally
+		// be specified. Since we normalize we know this will be in the range (0,1).
+		if (thresholdEstimator == null) {
+			return threshold;
+		}
+
+		// Paper uses an algorithm which is O(number of patterns ^ 2), so we estimate from a sample
+		// instead. The estimate is made once per process, so is reused across batches and passes.
+		double estimated = thresholdEstimator.estimate(patterns);
+		if (Double.isNaN(estimated)) {
+			LOGGER.warn("No patterns share a term, so unable to estimate the similarity threshold, using {}",
+					threshold);
+			return threshold;
+		}
+
+		double[] sample = thresholdEstimator.getSample();
+		LOGGER.info("Estimated similarity threshold {} from {} sampled pattern pairs (similarity {} to {})",
+				estimated, sample.length, sample[0], sample[sample.length - 1]);
+		return estimated;
 	}
 
 	private void filterClusters(List<ClusteredPatterns> clusters) {
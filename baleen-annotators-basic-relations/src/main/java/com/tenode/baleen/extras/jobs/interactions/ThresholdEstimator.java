@@ -0,0 +1,132 @@
+package com.tenode.baleen.extras.jobs.interactions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+
+/**
+ * Estimates a similarity threshold for clustering from a sample of pattern pairs.
+ *
+ * Calculating the similarity of every pair of patterns is quadratic. Instead pairs are drawn at
+ * random from an inverted index of the terms: a random pattern, one of its terms at random, and a
+ * random other pattern with that term. These are the pairs which could be clustered together (a
+ * pair without a shared term has a similarity of 0). The threshold is a quantile of the sampled
+ * similarities.
+ *
+ * The sample is drawn from a fixed seed, so the estimate is repeatable.
+ */
+public final class ThresholdEstimator {
+
+	/** The default number of pairs to sample. */
+	public static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+	/** The default quantile of the sample to use as the threshold (the median). */
+	public static final double DEFAULT_QUANTILE = 0.5;
+
+	// Give up after this many draws per sample, as small sets may not have enough distinct pairs
+	private static final int MAX_ATTEMPTS_PER_SAMPLE = 4;
+
+	private final int sampleSize;
+
+	private final double quantile;
+
+	private final long seed;
+
+	private double[] sample = new double[0];
+
+	/**
+	 * Instantiates a new threshold estimator, with the default sample size and quantile.
+	 */
+	public ThresholdEstimator() {
+		this(DEFAULT_SAMPLE_SIZE, DEFAULT_QUANTILE, 0);
+	}
+
+	/**
+	 * Instantiates a new threshold estimator.
+	 *
+	 * @param sampleSize
+	 *            the maximum number of pairs to sample
+	 * @param quantile
+	 *            the quantile of the sampled similarities to use as the threshold [0,1]
+	 * @param seed
+	 *            the random seed
+	 */
+	public ThresholdEstimator(int sampleSize, double quantile, long seed) {
+		this.sampleSize = sampleSize;
+		this.quantile = Math.min(1, Math.max(0, quantile));
+		this.seed = seed;
+	}
+
+	/**
+	 * Estimate the threshold.
+	 *
+	 * @param patterns
+	 *            the patterns (with their term frequencies calculated)
+	 * @return the threshold, or NaN if there are no pairs of patterns sharing a term
+	 */
+	public double estimate(List<PatternReference> patterns) {
+		Map<Integer, List<Integer>> patternsByTerm = new HashMap<>();
+		List<Integer> withTerms = new ArrayList<>();
+		for (int i = 0; i < patterns.size(); i++) {
+			int[] ids = patterns.get(i).getTermIds();
+			if (ids.length > 0) {
+				withTerms.add(i);
+			}
+			for (int id : ids) {
+				patternsByTerm.computeIfAbsent(id, k -> new ArrayList<>()).add(i);
+			}
+		}
+
+		Random random = new Random(seed);
+		Set<Long> sampled = new HashSet<>();
+		double[] similarities = new double[sampleSize];
+		int size = 0;
+
+		if (!withTerms.isEmpty()) {
+			for (int attempt = 0; attempt < sampleSize * MAX_ATTEMPTS_PER_SAMPLE && size < sampleSize; attempt++) {
+				int i = withTerms.get(random.nextInt(withTerms.size()));
+				int[] ids = patterns.get(i).getTermIds();
+				List<Integer> withTerm = patternsByTerm.get(ids[random.nextInt(ids.length)]);
+				if (withTerm.size() < 2) {
+					continue;
+				}
+
+				// Pick one of the other patterns with the term (swapping i for the last)
+				int j = withTerm.get(random.nextInt(withTerm.size() - 1));
+				if (j == i) {
+					j = withTerm.get(withTerm.size() - 1);
+				}
+
+				// Each pair is only sampled once
+				if (sampled.add((long) Math.min(i, j) << 32 | Math.max(i, j))) {
+					similarities[size++] = patterns.get(i).calculateSimilarity(patterns.get(j));
+				}
+			}
+		}
+
+		sample = Arrays.copyOf(similarities, size);
+		Arrays.sort(sample);
+
+		if (size == 0) {
+			return Double.NaN;
+		}
+
+		return sample[(int) Math.floor(quantile * (size - 1))];
+	}
+
+	/**
+	 * The similarities sampled by the last estimate.
+	 *
+	 * @return the similarities, in ascending order
+	 */
+	public double[] getSample() {
+		return sample;
+	}
+}
@@ -0,0 +1,150 @@
+package com.tenode.baleen.extras.jobs.interactions.data;
+
+import java.util.Arrays;
+
+/**
+ * The sum of the normalised (by magnitude) term frequencies of a set of patterns, as a sparse
+ * vector sorted by term id.
+ *
+ * The mean similarity of a pattern to the set is then a single dot product with this vector.
+ */
+public final class Centroid {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// The first size entries are in use, the arrays grow (by doubling) as new terms are added
+	private int[] ids = new int[0];
+
+	private double[] weights = new double[0];
+
+	private int size = 0;
+
+	private int count = 0;
+
+	// A pattern without terms has an undefined (NaN) similarity to everything
+	private boolean hasEmptyPattern = false;
+
+	/**
+	 * Add a pattern to the centroid.
+	 *
+	 * @param pattern
+	 *            the pattern (with its term frequency calculated)
+	 */
+	public void add(PatternReference pattern) {
+		count++;
+
+		if (pattern.getTFMagnitude() == 0) {
+			hasEmptyPattern = true;
+			return;
+		}
+
+		int[] patternIds = pattern.getTermIds();
+		int[] counts = pattern.getTermCounts();
+		double magnitude = pattern.getTFMagnitude();
+
+		// Count the terms which are not yet in the centroid (both are sorted, so each search can
+		// start from the last match)
+		int added = 0;
+		int from = 0;
+		for (int id : patternIds) {
+			int i = Arrays.binarySearch(ids, from, size, id);
+			if (i >= 0) {
+				from = i + 1;
+			} else {
+				added++;
+				from = -i - 1;
+			}
+		}
+
+		if (added == 0) {
+			// Every term exists, so just update their weights
+			from = 0;
+			for (int j = 0; j < patternIds.length; j++) {
+				int i = Arrays.binarySearch(ids, from, size, patternIds[j]);
+				weights[i] += counts[j] / magnitude;
+				from = i + 1;
+			}
+			return;
+		}
+
+		ensureCapacity(size + added);
+
+		// Merge the pattern's terms in from the end, so nothing is overwritten before it is moved
+		int i = size - 1;
+		int j = patternIds.length - 1;
+		int k = size + added - 1;
+		while (j >= 0) {
+			if (i >= 0 && ids[i] > patternIds[j]) {
+				ids[k] = ids[i];
+				weights[k] = weights[i];
+				i--;
+			} else if (i >= 0 && ids[i] == patternIds[j]) {
+				ids[k] = ids[i];
+				weights[k] = weights[i] + counts[j] / magnitude;
+				i--;
+				j--;
+			} else {
+				ids[k] = patternIds[j];
+				weights[k] = counts[j] / magnitude;
+				j--;
+			}
+			k--;
+		}
+
+		size += added;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > ids.length) {
+			int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, ids.length * 2));
+			ids = Arrays.copyOf(ids, newCapacity);
+			weights = Arrays.copyOf(weights, newCapacity);
+		}
+	}
+
+	/**
+	 * The mean similarity of the pattern to the patterns in the centroid.
+	 *
+	 * @param pattern
+	 *            the pattern (with its term frequency calculated)
+	 * @return the similarity (0 if the centroid is empty)
+	 */
+	public double calculateSimilarity(PatternReference pattern) {
+		if (count == 0) {
+			return 0;
+		} else if (hasEmptyPattern) {
+			return Double.NaN;
+		}
+
+		int[] patternIds = pattern.getTermIds();
+		int[] counts = pattern.getTermCounts();
+
+		double score = 0;
+		for (int i = 0; i < patternIds.length; i++) {
+			int j = Arrays.binarySearch(ids, 0, size, patternIds[i]);
+			if (j >= 0) {
+				score += counts[i] * weights[j];
+			}
+		}
+
+		return score / pattern.getTFMagnitude() / count;
+	}
+
+	/**
+	 * The ids of the terms in the centroid, in ascending order.
+	 *
+	 * @return the term ids
+	 */
+	public int[] getTermIds() {
+		return Arrays.copyOf(ids, size);
+	}
+
+	/**
+	 * The number of patterns added.
+	 *
+	 * @return the count
+	 */
+	public int getCount() {
+		return count;
+	}
+}
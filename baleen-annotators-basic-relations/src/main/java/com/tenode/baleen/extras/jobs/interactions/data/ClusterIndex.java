@@ -0,0 +1,124 @@
+package com.tenode.baleen.extras.jobs.interactions.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index from term id to the clusters which contain a pattern with that term.
+ *
+ * Clusters are identified by their position in the list of clusters (in the order they are
+ * created). A pattern can only have a non-zero similarity with a cluster which shares at least one
+ * of its terms, so only these candidates need to be scored.
+ */
+public final class ClusterIndex {
+
+	private final Map<Integer, List<Integer>> clustersByTerm = new HashMap<>();
+
+	private final List<Set<Integer>> termsByCluster = new ArrayList<>();
+
+	/**
+	 * Add a new cluster, holding the pattern.
+	 *
+	 * @param pattern
+	 *            the first pattern of the cluster
+	 * @return the index of the cluster
+	 */
+	public int addCluster(PatternReference pattern) {
+		return addCluster(pattern.getTermIds());
+	}
+
+	/**
+	 * Add a new cluster, holding the terms.
+	 *
+	 * @param termIds
+	 *            the ids of the terms in the cluster
+	 * @return the index of the cluster
+	 */
+	public int addCluster(int[] termIds) {
+		int cluster = termsByCluster.size();
+		termsByCluster.add(new HashSet<>());
+		add(cluster, termIds);
+		return cluster;
+	}
+
+	/**
+	 * Add a pattern to an existing cluster.
+	 *
+	 * @param cluster
+	 *            the index of the cluster
+	 * @param pattern
+	 *            the pattern
+	 */
+	public void add(int cluster, PatternReference pattern) {
+		add(cluster, pattern.getTermIds());
+	}
+
+	/**
+	 * Add terms to an existing cluster.
+	 *
+	 * @param cluster
+	 *            the index of the cluster
+	 * @param termIds
+	 *            the ids of the terms
+	 */
+	public void add(int cluster, int[] termIds) {
+		Set<Integer> terms = termsByCluster.get(cluster);
+		for (int term : termIds) {
+			if (terms.add(term)) {
+				clustersByTerm.computeIfAbsent(term, k -> new ArrayList<>()).add(cluster);
+			}
+		}
+	}
+
+	/**
+	 * The clusters which share at least one term with the pattern.
+	 *
+	 * @param pattern
+	 *            the pattern
+	 * @return the cluster indexes, in ascending order
+	 */
+	public int[] getCandidates(PatternReference pattern) {
+		int size = 0;
+		for (int term : pattern.getTermIds()) {
+			List<Integer> clusters = clustersByTerm.get(term);
+			if (clusters != null) {
+				size += clusters.size();
+			}
+		}
+
+		int[] candidates = new int[size];
+		int i = 0;
+		for (int term : pattern.getTermIds()) {
+			List<Integer> clusters = clustersByTerm.get(term);
+			if (clusters != null) {
+				for (int c : clusters) {
+					candidates[i++] = c;
+				}
+			}
+		}
+		Arrays.sort(candidates);
+
+		int distinct = 0;
+		for (int j = 0; j < size; j++) {
+			if (distinct == 0 || candidates[j] != candidates[distinct - 1]) {
+				candidates[distinct++] = candidates[j];
+			}
+		}
+
+		return Arrays.copyOf(candidates, distinct);
+	}
+
+	/**
+	 * The number of clusters.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return termsByCluster.size();
+	}
+}
@@ -1,9 +1,9 @@
 package com.tenode.baleen.extras.jobs.interactions.data;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -11,19 +11,18 @@ import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.resource.ResourceInitializationException;
 
-import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
-import com.tenode.baleen.extras.jobs.interactions.InteractionIdentifier;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternSchema;
+import com.tenode.baleen.extras.jobs.interactions.AbstractInteractionIdentificationTask;
 import com.tenode.baleen.wordnet.resources.WordNetResource;
 
 import net.sf.extjwnl.data.POS;
 import uk.gov.dstl.baleen.resources.SharedMongoResource;
-import uk.gov.dstl.baleen.uima.jobs.BaleenTask;
 import uk.gov.dstl.baleen.uima.jobs.JobSettings;
 
-public class ClusterTask extends BaleenTask {
+public class ClusterTask extends AbstractInteractionIdentificationTask {
 
 	/**
 	 * Connection to Mongo
@@ -72,6 +71,8 @@ public class ClusterTask extends BaleenTask {
 	 *
 	 * The smaller threshold the more pattern clusters will be created.
 	 *
+	 * This is also used if estimateThreshold is set but no estimate can be made.
+	 *
 	 * @baleen.config 0.4
 	 */
 	public static final String KEY_THRESHOLD = "threshold";
@@ -91,26 +92,38 @@ public class ClusterTask extends BaleenTask {
 	@ConfigurationParameter(name = KEY_MIN_PATTERNS, defaultValue = "2")
 	private int minPatternsInCluster;
 
+	/**
+	 * The name of the Mongo collection which holds the dictionary for compact patterns.
+	 *
+	 * @baleen.config patternDictionary
+	 */
+	public static final String KEY_DICTIONARY_COLLECTION = "dictionaryCollection";
+	@ConfigurationParameter(name = KEY_DICTIONARY_COLLECTION, defaultValue = "patternDictionary")
+	private String dictionaryCollectionName;
+
 	private DBCollection patternCollection;
 
+	private PatternSchema schema;
+
 	private DBCollection interactionCollection;
 
 	@Override
 	public void doInitialize(UimaContext aContext) throws ResourceInitializationException {
 		super.doInitialize(aContext);
 
-		patternCollection = mongo.getDB().getCollection(patternCollectionName);
+		if (isReadingPatternFiles()) {
+			schema = PatternSchema.full();
+		} else {
+			patternCollection = mongo.getDB().getCollection(patternCollectionName);
+			schema = PatternSchema.read(mongo.getDB().getCollection(dictionaryCollectionName));
+		}
 
 		interactionCollection = mongo.getDB().getCollection(interactionCollectionName);
 	}
 
 	@Override
 	protected void execute(JobSettings settings) throws AnalysisEngineProcessException {
-		final List<PatternReference> patterns = loadPatternsFromMongo().collect(Collectors.toList());
-
-		InteractionIdentifier identifier = new InteractionIdentifier(minPatternsInCluster, threshold,
-				wordNet.getDictionary());
-		Stream<String> interactionWords = identifier.process(patterns);
+		Stream<String> interactionWords = identifyInteractions(minPatternsInCluster, threshold, wordNet.getDictionary());
 
 		// Replace the database
 		interactionCollection.drop();
@@ -123,37 +136,36 @@ public class ClusterTask extends BaleenTask {
 
 	}
 
-	private Stream<PatternReference> loadPatternsFromMongo() {
-		return StreamSupport.stream(patternCollection.find().spliterator(), false)
-				.map(o -> {
-					final BasicDBList words = (BasicDBList) o.get("words");
-					final List<Word> tokens = words.stream().map(w -> {
-						// NOTE: The paper seems to suggest you use the word, not the lemma
-						// and then normalise after the fact.
-						// However doing that must reduce the chance of phrases being matched as the
-						// same relation therefore we do it upfront as we want "Jack saw Jill, Jack
-						// sees Jill, etc to be same)
-						// Obviously the quality of this approach will depend on the quality of the
-						// lemma outputs.
-
-						DBObject object = (DBObject) w;
-						String text = (String) object.get("text");
-						String pos = (String) object.get("pos");
-						String lemma = (String) object.get("lemma");
-
-						if (lemma == null || lemma.isEmpty()) {
-							// If we don't have lemma information, we just have to use the actual
-							// word
-							// TODO: Should be lemma here, using wordnet? Or trust the user wanted
-							// this.
-							lemma = text;
-						}
-
-						return new Word(lemma, posFromString(pos));
-					}).collect(Collectors.toList());
-					return new PatternReference(o.get("_id").toString(), tokens);
-				});
+	@Override
+	protected Stream<PatternReference> readPatterns() throws IOException {
+		return readPatternObjects(patternCollection).map(this::toPatternReference);
+	}
 
+	private PatternReference toPatternReference(DBObject o) {
+		final List<Word> tokens = schema.readWords(o).stream().map(w -> {
+			// NOTE: The paper seems to suggest you use the word, not the lemma
+			// and then normalise after the fact.
+			// However doing that must reduce the chance of phrases being matched as the
+			// same relation therefore we do it upfront as we want "Jack saw Jill, Jack
+			// sees Jill, etc to be same)
+			// Obviously the quality of this approach will depend on the quality of the
+			// lemma outputs.
+
+			String text = w.getText();
+			String pos = w.getPos();
+			String lemma = w.getLemma();
+
+			if (lemma == null || lemma.isEmpty()) {
+				// If we don't have lemma information, we just have to use the actual
+				// word
+				// TODO: Should be lemma here, using wordnet? Or trust the user wanted
+				// this.
+				lemma = text;
+			}
+
+			return new Word(lemma, posFromString(pos));
+		}).collect(Collectors.toList());
+		return new PatternReference(o.get("_id").toString(), tokens);
 	}
 
 	private POS posFromString(String pos) {
@@ -7,26 +7,23 @@ public class ClusteredPatterns {
 
 	private final List<PatternReference> patterns = new ArrayList<>();
 
+	private final Centroid centroid = new Centroid();
+
 	public ClusteredPatterns() {
 		// Do nothing
 	}
 
 	public ClusteredPatterns(PatternReference pattern) {
-		patterns.add(pattern);
+		add(pattern);
 	}
 
 	public double calculateSimilarity(PatternReference pattern) {
-
-		if (patterns.isEmpty()) {
-			return 0;
-		} else {
-			double sum = patterns.stream().map(p -> p.calculateSimilarity(pattern)).reduce(0.0, (a, b) -> a + b);
-			return sum / size();
-		}
+		return centroid.calculateSimilarity(pattern);
 	}
 
 	public void add(PatternReference pr) {
 		patterns.add(pr);
+		centroid.add(pr);
 	}
 
 	public List<PatternReference> getPatterns() {
@@ -2,7 +2,7 @@ package com.tenode.baleen.extras.jobs.interactions.data;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public final class PatternReference {
@@ -11,7 +11,9 @@ public final class PatternReference {
 
 	private final List<Word> tokens;
 
-	private int[] termFrequency;
+	private int[] termIds;
+
+	private int[] termCounts;
 
 	private int termMagnitude;
 
@@ -37,36 +39,75 @@ public final class PatternReference {
 		return termMagnitude;
 	}
 
-	public int[] getTermFrequency() {
-		return termFrequency;
+	/**
+	 * The ids of the terms in this pattern, in ascending order.
+	 *
+	 * @return the term ids
+	 */
+	public int[] getTermIds() {
+		return termIds;
 	}
 
-	public void calculateTermFrequency(Set<Word> terms) {
-		termFrequency = new int[terms.size()];
-		termMagnitude = 0;
+	/**
+	 * The number of times each term (in getTermIds()) occurs in this pattern.
+	 *
+	 * @return the term counts
+	 */
+	public int[] getTermCounts() {
+		return termCounts;
+	}
 
-		// Naive implementation, but perhaps correct way given that the tokens should be very small
-		// in general
-		int i = 0;
-		for (Word term : terms) {
-			for (Word token : tokens) {
-				// Note we ignore the POS here
-				if (term.getLemma().equals(token.getLemma())) {
-					termFrequency[i]++;
-					termMagnitude++;
-				}
+	/**
+	 * Calculate the (sparse) term frequency vector of this pattern.
+	 *
+	 * @param terms
+	 *            the id of each term (lemma) across all the patterns
+	 */
+	public void calculateTermFrequency(Map<String, Integer> terms) {
+		// Note we ignore the POS here
+		int[] ids = new int[tokens.size()];
+		int length = 0;
+		for (Word token : tokens) {
+			Integer id = terms.get(token.getLemma());
+			if (id != null) {
+				ids[length++] = id;
 			}
-			i++;
+		}
+		Arrays.sort(ids, 0, length);
+
+		// Count the runs of each id
+		int[] counts = new int[length];
+		int distinct = 0;
+		for (int i = 0; i < length; i++) {
+			if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+				ids[distinct++] = ids[i];
+			}
+			counts[distinct - 1]++;
 		}
 
+		termIds = Arrays.copyOf(ids, distinct);
+		termCounts = Arrays.copyOf(counts, distinct);
+		termMagnitude = length;
 	}
 
 	public double calculateSimilarity(PatternReference pattern) {
-		int[] otherTF = pattern.getTermFrequency();
+		int[] otherIds = pattern.getTermIds();
+		int[] otherCounts = pattern.getTermCounts();
 
+		// Merge the sorted term ids
 		double score = 0;
-		for (int i = 0; i < termFrequency.length; i++) {
-			score += termFrequency[i] * otherTF[i];
+		int i = 0;
+		int j = 0;
+		while (i < termIds.length && j < otherIds.length) {
+			if (termIds[i] < otherIds[j]) {
+				i++;
+			} else if (termIds[i] > otherIds[j]) {
+				j++;
+			} else {
+				score += termCounts[i] * otherCounts[j];
+				i++;
+				j++;
+			}
 		}
 
 		// NOTE: Departure from the paper (they don't do the division to normalize the result)
@@ -0,0 +1,78 @@
+package com.tenode.baleen.extras.jobs.interactions.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cluster of patterns which does not hold the patterns themselves, only their centroid and the
+ * number of times each word occurs.
+ *
+ * A cluster may be seeded with the centroid of a previous pass over the patterns. Patterns are
+ * then scored against the seed, rather than the patterns added in this pass.
+ */
+public final class StreamedCluster {
+
+	private final Centroid seed;
+
+	private final Centroid centroid = new Centroid();
+
+	private final Map<Word, Long> wordCounts = new HashMap<>();
+
+	/**
+	 * Instantiates a new, unseeded, cluster.
+	 */
+	public StreamedCluster() {
+		this(null);
+	}
+
+	/**
+	 * Instantiates a new cluster.
+	 *
+	 * @param seed
+	 *            the centroid to score against (null to use the patterns added)
+	 */
+	public StreamedCluster(Centroid seed) {
+		this.seed = seed;
+	}
+
+	public double calculateSimilarity(PatternReference pattern) {
+		return seed != null ? seed.calculateSimilarity(pattern) : centroid.calculateSimilarity(pattern);
+	}
+
+	public void add(PatternReference pr) {
+		centroid.add(pr);
+		pr.getTokens().forEach(w -> wordCounts.merge(w, 1L, Long::sum));
+	}
+
+	/**
+	 * The centroid of the patterns added.
+	 *
+	 * @return the centroid
+	 */
+	public Centroid getCentroid() {
+		return centroid;
+	}
+
+	/**
+	 * Checks if the cluster was seeded from a previous pass.
+	 *
+	 * @return true, if seeded
+	 */
+	public boolean isSeeded() {
+		return seed != null;
+	}
+
+	/**
+	 * The number of times each word occurs in the patterns added.
+	 *
+	 * @return the word counts
+	 */
+	public Map<Word, Long> getWordCounts() {
+		return wordCounts;
+	}
+
+	public int size() {
+		return centroid.getCount();
+	}
+
+}
@@ -1,18 +1,28 @@
 package com.tenode.baleen.extras.annotators.relationships;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
 import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.resource.ExternalResourceDescription;
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.tenode.baleen.extras.annotators.relationships.PatternExtractor;
+import com.tenode.baleen.extras.common.resources.SharedStopWordResource;
 
 import uk.gov.dstl.baleen.annotators.testing.AnnotatorTestBase;
 import uk.gov.dstl.baleen.types.language.Pattern;
@@ -35,19 +45,130 @@ public class PatternExtractorTest extends AnnotatorTestBase {
 
 	@Test
 	public void testProcess() throws AnalysisEngineProcessException {
-		final String text = "The fox jumps over the dog.";
-		jCas.setDocumentText(text);
+		addFoxAndDog();
+
+		SimplePipeline.runPipeline(jCas, ae);
+
+		final Collection<Pattern> patterns = JCasUtil.select(jCas, Pattern.class);
+		Assert.assertEquals(1, patterns.size());
+
+		final Pattern p = patterns.iterator().next();
+		Assert.assertEquals(1, p.getWords().size());
+		Assert.assertEquals("jumps", p.getWords(0).getCoveredText());
+
+	}
+
+	@Test
+	public void testOutsideWindow() throws UIMAException {
+		final AnalysisEngine smallWindowAe = AnalysisEngineFactory.createEngine(
+				AnalysisEngineFactory.createEngineDescription(PatternExtractor.class,
+						PatternExtractor.PARAM_WINDOW_SIZE, 4));
+
+		addFoxAndDog();
+
+		SimplePipeline.runPipeline(jCas, smallWindowAe);
+
+		Assert.assertTrue(JCasUtil.select(jCas, Pattern.class).isEmpty());
+	}
 
-		final Sentence sentence = new Sentence(jCas);
-		sentence.setBegin(0);
-		sentence.setEnd(text.length());
-		sentence.addToIndexes(jCas);
+	@Test
+	public void testNegation() throws AnalysisEngineProcessException {
+		addSentence("The fox did not jump over the dog.", "fox", "dog");
 
+		SimplePipeline.runPipeline(jCas, ae);
+
+		Assert.assertTrue(JCasUtil.select(jCas, Pattern.class).isEmpty());
+	}
+
+	@Test
+	public void testNegationIsWholeWord() throws AnalysisEngineProcessException {
+		addSentence("The fox fears nothing but dog.", "fox", "dog");
+
+		SimplePipeline.runPipeline(jCas, ae);
+
+		final Collection<Pattern> patterns = JCasUtil.select(jCas, Pattern.class);
+		Assert.assertEquals(1, patterns.size());
+		Assert.assertEquals("fears", patterns.iterator().next().getWords(0).getCoveredText());
+	}
+
+	@Test
+	public void testStopWordResource() throws UIMAException, IOException {
+		final Path file = Files.createTempFile("stopwords", ".txt");
+		try {
+			Files.write(file, Arrays.asList("# Only jumps is a stop word", "Jumps"), StandardCharsets.UTF_8);
+
+			final ExternalResourceDescription erd = ExternalResourceFactory.createExternalResourceDescription(
+					SharedStopWordResource.class, SharedStopWordResource.PARAM_FILE, file.toString());
+			final AnalysisEngine stopWordAe = AnalysisEngineFactory.createEngine(
+					AnalysisEngineFactory.createEngineDescription(PatternExtractor.class,
+							PatternExtractor.KEY_STOPWORDS, erd));
+
+			addFoxAndDog();
+
+			SimplePipeline.runPipeline(jCas, stopWordAe);
+
+			final Collection<Pattern> patterns = JCasUtil.select(jCas, Pattern.class);
+			Assert.assertEquals(1, patterns.size());
+
+			final Pattern p = patterns.iterator().next();
+			Assert.assertEquals(2, p.getWords().size());
+			Assert.assertEquals("over", p.getWords(0).getCoveredText());
+			Assert.assertEquals("the", p.getWords(1).getCoveredText());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testEntityWordsRemoved() throws UIMAException {
+		final AnalysisEngine largeWindowAe = AnalysisEngineFactory.createEngine(
+				AnalysisEngineFactory.createEngineDescription(PatternExtractor.class,
+						PatternExtractor.PARAM_WINDOW_SIZE, 10));
+
+		addSentence("The fox chased the cat near the dog.", "fox", "cat", "dog");
+
+		SimplePipeline.runPipeline(jCas, largeWindowAe);
+
+		final List<String> patterns = getPatterns();
+		Assert.assertTrue(patterns.contains("fox:chased"));
+		Assert.assertTrue(patterns.contains("cat:near"));
+		// The cat entity is removed from the fox-dog pattern
+		Assert.assertTrue(patterns.contains("fox:chased,near"));
+		Assert.assertEquals(3, patterns.size());
+	}
+
+	@Test
+	public void testParallel() throws UIMAException {
+		final AnalysisEngine parallelAe = AnalysisEngineFactory.createEngine(
+				AnalysisEngineFactory.createEngineDescription(PatternExtractor.class,
+						PatternExtractor.PARAM_PARALLEL, true));
+
+		final String text = "The fox jumps over the dog. The cat sat near the rat. The owl flew at the bat.";
+		addSentences(text, "fox", "dog", "cat", "rat", "owl", "bat");
+
+		SimplePipeline.runPipeline(jCas, parallelAe);
+
+		Assert.assertEquals(Arrays.asList("fox:jumps", "cat:sat,near", "owl:flew"), getPatterns());
+	}
+
+	private void addFoxAndDog() {
+		addSentence("The fox jumps over the dog.", "fox", "dog");
+	}
+
+	private void addSentence(final String text, final String... entities) {
+		addSentences(text, entities);
+	}
+
+	private void addSentences(final String text, final String... entities) {
+		jCas.setDocumentText(text);
+
+		int sentenceBegin = 0;
 		int offset = 0;
 		while (offset < text.length()) {
+			final int stop = text.indexOf(".", offset);
 			int end = text.indexOf(" ", offset);
-			if (end == -1) {
-				end = text.indexOf(".", offset);
+			if (end == -1 || stop != -1 && stop < end) {
+				end = stop;
 			}
 
 			if (end > 0) {
@@ -56,30 +177,36 @@ public class PatternExtractorTest extends AnnotatorTestBase {
 				wordToken.setEnd(end);
 				wordToken.addToIndexes(jCas);
 				offset = end + 1;
+
+				if (end == stop) {
+					// Full stop, so end the sentence and skip the following space
+					final Sentence sentence = new Sentence(jCas);
+					sentence.setBegin(sentenceBegin);
+					sentence.setEnd(end + 1);
+					sentence.addToIndexes(jCas);
+
+					offset++;
+					sentenceBegin = offset;
+				}
 			} else {
 				offset = text.length();
 			}
 		}
 
-		final Entity fox = new Entity(jCas);
-		fox.setBegin(4);
-		fox.setEnd(7);
-		fox.addToIndexes(jCas);
-
-		final Entity dog = new Entity(jCas);
-		dog.setBegin(23);
-		dog.setEnd(26);
-		dog.addToIndexes(jCas);
-
-		SimplePipeline.runPipeline(jCas, ae);
-
-		final Collection<Pattern> patterns = JCasUtil.select(jCas, Pattern.class);
-		Assert.assertEquals(1, patterns.size());
-
-		final Pattern p = patterns.iterator().next();
-		Assert.assertEquals(1, p.getWords().size());
-		Assert.assertEquals("jumps", p.getWords(0).getCoveredText());
+		for (final String e : entities) {
+			final Entity entity = new Entity(jCas);
+			entity.setBegin(text.indexOf(e));
+			entity.setEnd(text.indexOf(e) + e.length());
+			entity.addToIndexes(jCas);
+		}
+	}
 
+	private List<String> getPatterns() {
+		return JCasUtil.select(jCas, Pattern.class).stream()
+				.map(p -> p.getSource().getCoveredText() + ":"
+						+ Arrays.stream(p.getWords().toArray()).map(w -> ((WordToken) w).getCoveredText())
+								.collect(Collectors.joining(",")))
+				.collect(Collectors.toList());
 	}
 
 }
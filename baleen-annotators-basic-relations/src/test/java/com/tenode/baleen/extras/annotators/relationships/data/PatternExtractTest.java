@@ -14,6 +14,7 @@ import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.tenode.baleen.extras.annotators.relationships.data.PatternExtract;
+import com.tenode.baleen.extras.common.language.CaseInsensitiveWordSet;
 
 import uk.gov.dstl.baleen.types.language.WordToken;
 import uk.gov.dstl.baleen.types.semantic.Entity;
@@ -73,6 +74,24 @@ public class PatternExtractTest {
 
 	}
 
+	@Test
+	public void testContainsWholeWords() {
+		final PatternExtract nothing = new PatternExtract(from, to, 4, 19);
+		Assert.assertFalse(nothing.contains("The nothing is not here", "no"));
+		Assert.assertTrue(nothing.contains("The nothing is not here", "NOT"));
+		Assert.assertFalse(nothing.contains("The nothing is not here", "here"));
+	}
+
+	@Test
+	public void testContainsWordSet() {
+		final CaseInsensitiveWordSet negations = new CaseInsensitiveWordSet(Arrays.asList("no", "not"));
+
+		Assert.assertFalse(new PatternExtract(from, to, 4, 15).contains("The nothing is not here", negations));
+		Assert.assertTrue(new PatternExtract(from, to, 4, 18).contains("The nothing is not here", negations));
+		Assert.assertTrue(new PatternExtract(from, to, 3, 9).contains("Yes,No-one", negations));
+		Assert.assertFalse(new PatternExtract(from, to, 0, 0).contains("No", negations));
+	}
+
 	@Test
 	public void testGetText() {
 		pe.setWordTokens(Collections.singletonList(token));
@@ -0,0 +1,135 @@
+package com.tenode.baleen.extras.consumers.relationships;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.impl.CustomResourceSpecifier_impl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.DBObject;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternFileReader;
+
+import uk.gov.dstl.baleen.annotators.testing.AnnotatorTestBase;
+import uk.gov.dstl.baleen.types.common.Person;
+import uk.gov.dstl.baleen.types.language.Pattern;
+import uk.gov.dstl.baleen.types.language.WordLemma;
+import uk.gov.dstl.baleen.types.language.WordToken;
+import uk.gov.dstl.baleen.types.semantic.Entity;
+import uk.gov.dstl.baleen.types.semantic.Location;
+
+public class FilePatternSaverTest extends AnnotatorTestBase {
+
+	private Path directory;
+
+	private AnalysisEngine ae;
+
+	@Before
+	public void setUp() throws IOException, ResourceInitializationException {
+		directory = Files.createTempDirectory("patterns");
+
+		final AnalysisEngineDescription aed = AnalysisEngineFactory.createEngineDescription(FilePatternSaver.class,
+				FilePatternSaver.KEY_DIRECTORY, directory.toString(), FilePatternSaver.KEY_PATTERNS_PER_FILE, 2);
+		ae = AnalysisEngineFactory.createEngine(aed);
+		ae.initialize(new CustomResourceSpecifier_impl(), Collections.emptyMap());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (ae != null) {
+			ae.destroy();
+			ae = null;
+		}
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (final Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	@Test
+	public void test() throws AnalysisEngineProcessException, IOException {
+		addPattern();
+
+		for (int i = 0; i < 3; i++) {
+			ae.process(jCas);
+		}
+
+		// Remaining patterns are written on destroy
+		ae.destroy();
+		ae = null;
+
+		try (Stream<Path> files = Files.list(directory)) {
+			Assert.assertEquals(2, files.count());
+		}
+
+		final List<DBObject> objects;
+		try (Stream<DBObject> stream = PatternFileReader.read(directory)) {
+			objects = stream.collect(Collectors.toList());
+		}
+		Assert.assertEquals(3, objects.size());
+		Assert.assertEquals(3, objects.stream().map(o -> o.get("_id")).distinct().count());
+
+		final DBObject object = objects.get(0);
+		Assert.assertEquals("cow", ((DBObject) object.get("source")).get("text"));
+		Assert.assertEquals("uk.gov.dstl.baleen.types.semantic.Location",
+				((DBObject) object.get("target")).get("type"));
+
+		final BasicDBList words = (BasicDBList) object.get("words");
+		Assert.assertEquals(1, words.size());
+		final DBObject word = (DBObject) words.get(0);
+		Assert.assertEquals("jumps", word.get("text"));
+		Assert.assertEquals("VB", word.get("pos"));
+		Assert.assertEquals("jump", word.get("lemma"));
+	}
+
+	private void addPattern() {
+		jCas.setDocumentText("The cow jumps over the moon.");
+
+		final Entity cow = new Person(jCas);
+		cow.setBegin(4);
+		cow.setEnd(7);
+		cow.addToIndexes(jCas);
+
+		final Entity moon = new Location(jCas);
+		moon.setBegin(23);
+		moon.setEnd(27);
+		moon.addToIndexes(jCas);
+
+		final WordToken jumps = new WordToken(jCas);
+		jumps.setBegin(8);
+		jumps.setEnd(8 + "jumps".length());
+		jumps.setPartOfSpeech("VB");
+		final WordLemma jumpLemma = new WordLemma(jCas);
+		jumpLemma.setLemmaForm("jump");
+		jumps.setLemmas(new FSArray(jCas, 1));
+		jumps.setLemmas(0, jumpLemma);
+		jumps.addToIndexes();
+
+		final Pattern pattern = new Pattern(jCas);
+		pattern.setBegin(8);
+		pattern.setBegin(22);
+		pattern.setWords(new FSArray(jCas, 1));
+		pattern.setWords(0, jumps);
+		pattern.setSource(cow);
+		pattern.setTarget(moon);
+		pattern.addToIndexes();
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.tenode.baleen.extras.consumers.relationships;
 
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
@@ -21,6 +22,8 @@ import com.mongodb.BasicDBList;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import com.tenode.baleen.extras.consumers.relationships.MongoPatternSaver;
+import com.tenode.baleen.extras.consumers.relationships.data.PatternSchema;
+import com.tenode.baleen.extras.consumers.relationships.data.SavedWord;
 
 import uk.gov.dstl.baleen.annotators.testing.AnnotatorTestBase;
 import uk.gov.dstl.baleen.resources.SharedFongoResource;
@@ -38,15 +41,27 @@ public class MongoPatternSaverTest extends AnnotatorTestBase {
 
 	@Before
 	public void setUp() throws ResourceInitializationException, ResourceAccessException {
+		createEngine();
+	}
+
+	private void createEngine(final Object... params) throws ResourceInitializationException, ResourceAccessException {
+		tearDown();
+
 		// Create a description of an external resource - a fongo instance, in the same way we would
 		// have created a shared mongo resource
 		final ExternalResourceDescription erd = ExternalResourceFactory.createExternalResourceDescription(
 				SharedFongoResource.class, "fongo.collection", "test", "fongo.data", "[]");
 
 		// Create the analysis engine
+		final Object[] allParams = new Object[params.length + 4];
+		allParams[0] = MongoPatternSaver.KEY_MONGO;
+		allParams[1] = erd;
+		allParams[2] = "collection";
+		allParams[3] = "test";
+		System.arraycopy(params, 0, allParams, 4, params.length);
+
 		final AnalysisEngineDescription aed = AnalysisEngineFactory.createEngineDescription(MongoPatternSaver.class,
-				MongoPatternSaver.KEY_MONGO, erd,
-				"collection", "test");
+				allParams);
 		ae = AnalysisEngineFactory.createEngine(aed);
 		ae.initialize(new CustomResourceSpecifier_impl(), Collections.emptyMap());
 
@@ -59,12 +74,132 @@ public class MongoPatternSaverTest extends AnnotatorTestBase {
 	public void tearDown() {
 		if (ae != null) {
 			ae.destroy();
+			ae = null;
 		}
 	}
 
 	@Test
 	public void test() throws AnalysisEngineProcessException {
 
+		addPattern();
+
+		ae.process(jCas);
+
+		final DBCollection collection = sfr.getDB().getCollection("test");
+		Assert.assertEquals(1, collection.count());
+
+		final DBObject object = collection.find().next();
+
+		final DBObject source = (DBObject) object.get("source");
+		final DBObject target = (DBObject) object.get("target");
+		final BasicDBList words = (BasicDBList) object.get("words");
+
+		Assert.assertEquals("cow", source.get("text"));
+		Assert.assertEquals("uk.gov.dstl.baleen.types.common.Person", source.get("type"));
+
+		Assert.assertEquals("moon", target.get("text"));
+		Assert.assertEquals("uk.gov.dstl.baleen.types.semantic.Location", target.get("type"));
+
+		Assert.assertEquals(1, words.size());
+		final DBObject word = (DBObject) words.get(0);
+		Assert.assertEquals("jumps", word.get("text"));
+		Assert.assertEquals("VB", word.get("pos"));
+		Assert.assertEquals("jump", word.get("lemma"));
+
+		Assert.assertNull(object.get("signature"));
+	}
+
+	@Test
+	public void testSignature()
+			throws AnalysisEngineProcessException, ResourceInitializationException, ResourceAccessException {
+		createEngine(MongoPatternSaver.KEY_NGRAMS, 2);
+
+		addPattern();
+
+		ae.process(jCas);
+
+		final DBObject object = sfr.getDB().getCollection("test").find().next();
+		final BasicDBList signature = (BasicDBList) object.get("signature");
+
+		Assert.assertEquals(1, signature.size());
+		Assert.assertEquals("jump".hashCode(), signature.get(0));
+	}
+
+	@Test
+	public void testBatch()
+			throws AnalysisEngineProcessException, ResourceInitializationException, ResourceAccessException {
+		createEngine(MongoPatternSaver.KEY_BATCH_SIZE, 2);
+		final DBCollection collection = sfr.getDB().getCollection("test");
+
+		addPattern();
+		ae.process(jCas);
+		Assert.assertEquals(0, collection.count());
+
+		ae.process(jCas);
+		Assert.assertEquals(2, collection.count());
+
+		ae.process(jCas);
+		Assert.assertEquals(2, collection.count());
+
+		// Remaining patterns are saved on destroy
+		tearDown();
+		Assert.assertEquals(3, collection.count());
+	}
+
+	@Test
+	public void testBatchFlushInterval() throws AnalysisEngineProcessException, ResourceInitializationException,
+			ResourceAccessException, InterruptedException {
+		createEngine(MongoPatternSaver.KEY_BATCH_SIZE, 100, MongoPatternSaver.KEY_FLUSH_INTERVAL, 1L);
+		final DBCollection collection = sfr.getDB().getCollection("test");
+
+		addPattern();
+		ae.process(jCas);
+		Thread.sleep(5);
+		ae.process(jCas);
+
+		Assert.assertEquals(2, collection.count());
+	}
+
+	@Test
+	public void testWriteBehind()
+			throws AnalysisEngineProcessException, ResourceInitializationException, ResourceAccessException {
+		createEngine(MongoPatternSaver.KEY_QUEUE_SIZE, 2, MongoPatternSaver.KEY_BATCH_SIZE, 2);
+		final DBCollection collection = sfr.getDB().getCollection("test");
+
+		addPattern();
+		for (int i = 0; i < 10; i++) {
+			ae.process(jCas);
+		}
+
+		// Everything is written by the time the consumer is destroyed
+		tearDown();
+		Assert.assertEquals(10, collection.count());
+	}
+
+	@Test
+	public void testCompact()
+			throws AnalysisEngineProcessException, ResourceInitializationException, ResourceAccessException {
+		createEngine(MongoPatternSaver.KEY_COMPACT, true, MongoPatternSaver.KEY_SAVE_REFERENCE, true);
+
+		addPattern();
+
+		ae.process(jCas);
+
+		final DBObject object = sfr.getDB().getCollection("test").find().next();
+		Assert.assertEquals("cow", ((DBObject) object.get("s")).get("x"));
+		Assert.assertEquals("moon", ((DBObject) object.get("t")).get("x"));
+		Assert.assertNotNull(object.get("d"));
+		Assert.assertEquals(22, object.get("b"));
+
+		final List<SavedWord> words = PatternSchema.read(sfr.getDB().getCollection("patternDictionary"))
+				.readWords(object);
+		Assert.assertEquals(1, words.size());
+		Assert.assertEquals("jumps", words.get(0).getText());
+		Assert.assertEquals("VB", words.get(0).getPos());
+		Assert.assertEquals("jump", words.get(0).getLemma());
+	}
+
+	private void addPattern() {
 		jCas.setDocumentText("The cow jumps over the moon.");
 
 		final Entity cow = new Person(jCas);
@@ -95,30 +230,6 @@ public class MongoPatternSaverTest extends AnnotatorTestBase {
 		pattern.setSource(cow);
 		pattern.setTarget(moon);
 		pattern.addToIndexes();
-
-		ae.process(jCas);
-
-		final DBCollection collection = sfr.getDB().getCollection("test");
-		Assert.assertEquals(1, collection.count());
-
-		final DBObject object = collection.find().next();
-
-		final DBObject source = (DBObject) object.get("source");
-		final DBObject target = (DBObject) object.get("target");
-		final BasicDBList words = (BasicDBList) object.get("words");
-
-		Assert.assertEquals("cow", source.get("text"));
-		Assert.assertEquals("uk.gov.dstl.baleen.types.common.Person", source.get("type"));
-
-		Assert.assertEquals("moon", target.get("text"));
-		Assert.assertEquals("uk.gov.dstl.baleen.types.semantic.Location", target.get("type"));
-
-		Assert.assertEquals(1, words.size());
-		final DBObject word = (DBObject) words.get(0);
-		Assert.assertEquals("jumps", word.get("text"));
-		Assert.assertEquals("VB", word.get("pos"));
-		Assert.assertEquals("jump", word.get("lemma"));
-
 	}
 
 }
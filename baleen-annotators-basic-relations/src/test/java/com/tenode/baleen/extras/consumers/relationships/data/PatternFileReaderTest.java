@@ -0,0 +1,110 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+public class PatternFileReaderTest {
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("patterns");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (final Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(p);
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final ObjectId id = new ObjectId();
+
+		try (PatternFileWriter writer = new PatternFileWriter(directory, "test", 2)) {
+			writer.write(new BasicDBObject("_id", id).append("text", "first \"line\"\nsplit"));
+			for (int i = 1; i < 5; i++) {
+				writer.write(new BasicDBObject("value", i));
+			}
+
+			Assert.assertEquals(5, writer.getWritten());
+			Assert.assertEquals(3, writer.getFileCount());
+		}
+
+		// Other files are ignored
+		Files.write(directory.resolve("readme.txt"), Arrays.asList("ignore me"), StandardCharsets.UTF_8);
+
+		final List<DBObject> objects;
+		try (Stream<DBObject> stream = PatternFileReader.read(directory)) {
+			objects = stream.collect(Collectors.toList());
+		}
+
+		Assert.assertEquals(5, objects.size());
+		Assert.assertEquals(id, objects.get(0).get("_id"));
+		Assert.assertEquals("first \"line\"\nsplit", objects.get(0).get("text"));
+		for (int i = 1; i < 5; i++) {
+			Assert.assertEquals(i, ((Number) objects.get(i).get("value")).intValue());
+		}
+	}
+
+	@Test
+	public void testReadsLazily() throws IOException {
+		try (PatternFileWriter writer = new PatternFileWriter(directory, "test", 2)) {
+			for (int i = 0; i < 6; i++) {
+				writer.write(new BasicDBObject("value", i));
+			}
+		}
+
+		final List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.sorted().collect(Collectors.toList());
+		}
+		Assert.assertEquals(3, files.size());
+
+		try (Stream<DBObject> stream = PatternFileReader.read(directory)) {
+			final Iterator<DBObject> iterator = stream.iterator();
+			Assert.assertEquals(0, ((Number) iterator.next().get("value")).intValue());
+
+			// The last file has not been opened yet, so removing it is noticed
+			Files.delete(files.get(2));
+			for (int i = 1; i < 4; i++) {
+				Assert.assertEquals(i, ((Number) iterator.next().get("value")).intValue());
+			}
+			try {
+				iterator.hasNext();
+				Assert.fail("Expected the missing file to be reported");
+			} catch (final UncheckedIOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		try (Stream<DBObject> stream = PatternFileReader.read(directory)) {
+			Assert.assertEquals(0, stream.count());
+		}
+	}
+}
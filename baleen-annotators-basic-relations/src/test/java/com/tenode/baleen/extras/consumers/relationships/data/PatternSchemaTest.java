@@ -0,0 +1,129 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.fakemongo.Fongo;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+public class PatternSchemaTest {
+
+	private DBCollection dictionary;
+
+	@Before
+	public void before() {
+		dictionary = new Fongo("test").getDB("test").getCollection("dictionary");
+	}
+
+	@Test
+	public void testFull() {
+		final PatternSchema schema = PatternSchema.full();
+
+		Assert.assertFalse(schema.isCompact());
+		Assert.assertEquals("words", schema.field(PatternSchema.WORDS));
+
+		final DBObject entity = schema.entity("cow", "Person");
+		Assert.assertEquals("cow", entity.get("text"));
+		Assert.assertEquals("Person", entity.get("type"));
+
+		final DBObject word = schema.word("jumps", "VB", "jump");
+		Assert.assertEquals("jumps", word.get("text"));
+		Assert.assertEquals("VB", word.get("pos"));
+		Assert.assertEquals("jump", word.get("lemma"));
+
+		final List<SavedWord> words = PatternSchema.read(dictionary).readWords(pattern(schema, word));
+		Assert.assertEquals(1, words.size());
+		Assert.assertEquals("jumps", words.get(0).getText());
+		Assert.assertEquals("VB", words.get(0).getPos());
+		Assert.assertEquals("jump", words.get(0).getLemma());
+	}
+
+	@Test
+	public void testCompact() {
+		final PatternSchema schema = PatternSchema.compact(dictionary);
+
+		Assert.assertTrue(schema.isCompact());
+		Assert.assertEquals("w", schema.field(PatternSchema.WORDS));
+
+		final DBObject entity = schema.entity("cow", "Person");
+		Assert.assertEquals("cow", entity.get("x"));
+		Assert.assertTrue(entity.get("y") instanceof Integer);
+
+		final DBObject jumps = schema.word("jumps", "VB", "jump");
+		final DBObject over = schema.word("over", "IN", "over");
+		final DBObject leaps = schema.word("leaps", "VB", null);
+		Assert.assertEquals("jump", jumps.get("l"));
+		Assert.assertFalse(over.containsField("l"));
+		Assert.assertEquals(jumps.get("p"), leaps.get("p"));
+
+		// Entity type, and two parts of speech (plus the id counter)
+		Assert.assertEquals(4, dictionary.count());
+
+		final List<SavedWord> words = PatternSchema.read(dictionary).readWords(pattern(schema, jumps, over, leaps));
+		Assert.assertEquals(3, words.size());
+		Assert.assertEquals("jumps", words.get(0).getText());
+		Assert.assertEquals("VB", words.get(0).getPos());
+		Assert.assertEquals("jump", words.get(0).getLemma());
+		Assert.assertEquals("IN", words.get(1).getPos());
+		Assert.assertEquals("over", words.get(1).getLemma());
+		Assert.assertEquals("leaps", words.get(2).getLemma());
+	}
+
+	@Test
+	public void testCompactReusesDictionary() {
+		final DBObject first = PatternSchema.compact(dictionary).word("jumps", "VB", null);
+		final PatternSchema second = PatternSchema.compact(dictionary);
+
+		Assert.assertEquals(first.get("p"), second.word("leaps", "VB", null).get("p"));
+		Assert.assertNotEquals(first.get("p"), second.word("cow", "NN", null).get("p"));
+		Assert.assertEquals(3, dictionary.count());
+	}
+
+	@Test
+	public void testCompactSharedDictionary() {
+		// Both loaded before either has written
+		final PatternSchema first = PatternSchema.compact(dictionary);
+		final PatternSchema second = PatternSchema.compact(dictionary);
+
+		final Object vb = first.word("jumps", "VB", null).get("p");
+		final Object nn = second.word("cow", "NN", null).get("p");
+		Assert.assertNotEquals(vb, nn);
+		Assert.assertEquals(vb, second.word("leaps", "VB", null).get("p"));
+		Assert.assertEquals(nn, first.word("dog", "NN", null).get("p"));
+		Assert.assertEquals(3, dictionary.count());
+
+		final List<SavedWord> words = PatternSchema.read(dictionary)
+				.readWords(pattern(first, first.word("jumps", "VB", null), second.word("cow", "NN", null)));
+		Assert.assertEquals("VB", words.get(0).getPos());
+		Assert.assertEquals("NN", words.get(1).getPos());
+	}
+
+	@Test
+	public void testCompactExistingDictionary() {
+		// Written before the id counter was used
+		dictionary.insert(new BasicDBObject("_id", 5).append("k", PatternSchema.POS).append("v", "VB"));
+
+		final PatternSchema schema = PatternSchema.compact(dictionary);
+		Assert.assertEquals(5, schema.word("jumps", "VB", null).get("p"));
+		Assert.assertEquals(6, schema.word("cow", "NN", null).get("p"));
+	}
+
+	@Test
+	public void testReadMissingWords() {
+		Assert.assertTrue(PatternSchema.read(dictionary).readWords(new BasicDBObject()).isEmpty());
+	}
+
+	private DBObject pattern(final PatternSchema schema, final DBObject... words) {
+		final BasicDBList list = new BasicDBList();
+		for (final DBObject w : words) {
+			list.add(w);
+		}
+		return new BasicDBObject(schema.field(PatternSchema.WORDS), list);
+	}
+}
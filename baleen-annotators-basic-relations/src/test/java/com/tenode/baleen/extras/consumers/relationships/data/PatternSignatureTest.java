@@ -0,0 +1,43 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PatternSignatureTest {
+
+	@Test
+	public void testUnigrams() {
+		final int[] signature = PatternSignature.calculate(Arrays.asList("play", "role"), 1);
+
+		final int[] expected = { "play".hashCode(), "role".hashCode() };
+		Arrays.sort(expected);
+		Assert.assertArrayEquals(expected, signature);
+	}
+
+	@Test
+	public void testBigrams() {
+		final int[] signature = PatternSignature.calculate(Arrays.asList("play", "key", "role"), 2);
+
+		final int[] expected = { "play".hashCode(), "key".hashCode(), "role".hashCode(), "play key".hashCode(),
+				"key role".hashCode() };
+		Arrays.sort(expected);
+		Assert.assertArrayEquals(expected, signature);
+	}
+
+	@Test
+	public void testLargeN() {
+		final int[] signature = PatternSignature.calculate(Arrays.asList("see", "see"), 5);
+
+		final int[] expected = { "see".hashCode(), "see".hashCode(), "see see".hashCode() };
+		Arrays.sort(expected);
+		Assert.assertArrayEquals(expected, signature);
+	}
+
+	@Test
+	public void testEmpty() {
+		Assert.assertEquals(0, PatternSignature.calculate(Collections.emptyList(), 2).length);
+	}
+}
@@ -0,0 +1,103 @@
+package com.tenode.baleen.extras.consumers.relationships.data;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.github.fakemongo.Fongo;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+
+import uk.gov.dstl.baleen.uima.UimaMonitor;
+
+public class WriteBehindQueueTest {
+
+	private DBCollection collection;
+
+	private UimaMonitor monitor;
+
+	@Before
+	public void before() {
+		collection = new Fongo("test").getDB("test").getCollection("patterns");
+		monitor = new UimaMonitor("test", WriteBehindQueueTest.class);
+	}
+
+	@Test
+	public void testWrite() throws InterruptedException {
+		final WriteBehindQueue queue = new WriteBehindQueue(collection, 4, 3, monitor);
+		for (int i = 0; i < 10; i++) {
+			queue.put(new BasicDBObject("i", i));
+		}
+		queue.close();
+
+		Assert.assertEquals(10, collection.count());
+		Assert.assertEquals(10, queue.getWritten());
+		Assert.assertEquals(0, queue.getFailed());
+		Assert.assertEquals(0, queue.getDepth());
+	}
+
+	@Test
+	public void testMetrics() throws InterruptedException {
+		final Timer timer = new Timer();
+		final Histogram depth = new Histogram(new ExponentiallyDecayingReservoir());
+
+		final WriteBehindQueue queue = new WriteBehindQueue(collection, 4, 3, monitor, timer, depth);
+		for (int i = 0; i < 10; i++) {
+			queue.put(new BasicDBObject("i", i));
+		}
+		queue.close();
+
+		Assert.assertEquals(10, depth.getCount());
+		Assert.assertTrue(depth.getSnapshot().getMax() <= 4);
+		Assert.assertTrue(timer.getCount() > 0);
+	}
+
+	@Test(timeout = 10000)
+	public void testWriterFailure() throws InterruptedException {
+		final WriteBehindQueue queue = new WriteBehindQueue(collection, 1, 1, monitor);
+		queue.put(new UnwritableObject());
+
+		// The queue only holds one object, so this would block forever if the failure was ignored
+		try {
+			while (true) {
+				queue.put(new BasicDBObject("i", 1));
+			}
+		} catch (final IllegalStateException e) {
+			// Expected
+		}
+		Assert.assertEquals(1, queue.getFailed());
+
+		try {
+			queue.close();
+			Assert.fail("Expected the failure to be reported on close");
+		} catch (final IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	// An object which fails (with an exception other than a MongoException) when written
+	private static class UnwritableObject extends BasicDBObject {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Object get(final String key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean containsField(final String field) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Set<String> keySet() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
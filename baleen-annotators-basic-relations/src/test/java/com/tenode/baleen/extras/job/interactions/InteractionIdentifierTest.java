@@ -1,6 +1,7 @@
 package com.tenode.baleen.extras.job.interactions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -14,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.tenode.baleen.extras.jobs.interactions.InteractionIdentifier;
+import com.tenode.baleen.extras.jobs.interactions.ThresholdEstimator;
 import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
 import com.tenode.baleen.extras.jobs.interactions.data.Word;
 
@@ -24,6 +26,8 @@ import net.sf.extjwnl.dictionary.Dictionary;
 @RunWith(MockitoJUnitRunner.class)
 public class InteractionIdentifierTest {
 
+	private static final double QUANTILE = 0.75;
+
 	private InteractionIdentifier identifier;;
 
 	@Before
@@ -36,7 +40,69 @@ public class InteractionIdentifierTest {
 	public void testProcess() {
 		// Note in this test we are using non-lemma versions of the words (hence jumps / jumped are
 		// different)
-		List<PatternReference> patterns = Arrays.asList(
+		List<PatternReference> patterns = createPatterns();
+
+		Stream<String> words = identifier.process(patterns);
+
+		List<String> list = words.collect(Collectors.toList());
+		// Only mother, brother and law appear often enough to be consider interaction words
+		assertTrue(list.contains("mother"));
+		assertTrue(list.contains("law"));
+		assertTrue(list.contains("brother"));
+		assertEquals(3, list.size());
+
+	}
+
+	@Test
+	public void testParallel() throws JWNLException {
+		InteractionIdentifier parallel = new InteractionIdentifier(1, 0.2, Dictionary.getDefaultResourceInstance(),
+				4);
+
+		List<String> expected = identifier.process(createPatterns()).collect(Collectors.toList());
+		List<String> actual = parallel.process(createPatterns()).collect(Collectors.toList());
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testProcessInBatches() {
+		List<String> expected = identifier.process(createPatterns()).collect(Collectors.toList());
+
+		// A single batch of all the patterns gives the same result
+		List<String> single = identifier.process(() -> createPatterns().stream(), 100, 1)
+				.collect(Collectors.toList());
+		assertEquals(expected, single);
+
+		List<String> list = identifier.process(() -> createPatterns().stream(), 4, 2)
+				.collect(Collectors.toList());
+		assertTrue(list.contains("mother"));
+		assertTrue(list.contains("law"));
+		assertTrue(list.contains("brother"));
+	}
+
+	@Test
+	public void testEstimatedThreshold() throws JWNLException {
+		Dictionary dictionary = Dictionary.getDefaultResourceInstance();
+		ThresholdEstimator estimator = new ThresholdEstimator(ThresholdEstimator.DEFAULT_SAMPLE_SIZE, QUANTILE, 0);
+		InteractionIdentifier estimated = new InteractionIdentifier(1, 0.2, dictionary, 1, estimator);
+
+		List<String> list = estimated.process(createPatterns()).collect(Collectors.toList());
+
+		// The estimate is the quantile of the sample, and replaces the threshold given
+		double[] sample = estimator.getSample();
+		assertTrue(sample.length > 0);
+		double threshold = sample[(int) Math.floor(QUANTILE * (sample.length - 1))];
+		assertNotEquals(0.2, threshold, 0.0001);
+
+		// Clustering uses the estimate, which gives different words to the threshold given
+		List<String> expected = new InteractionIdentifier(1, threshold, dictionary).process(createPatterns())
+				.collect(Collectors.toList());
+		assertEquals(expected, list);
+		assertNotEquals(identifier.process(createPatterns()).collect(Collectors.toList()), list);
+	}
+
+	private List<PatternReference> createPatterns() {
+		return Arrays.asList(
 				new PatternReference("1", new Word("jumps", POS.VERB)),
 				new PatternReference("13", new Word("jumped", POS.VERB)),
 				new PatternReference("2", new Word("springs", POS.VERB)),
@@ -52,16 +118,6 @@ public class InteractionIdentifierTest {
 				new PatternReference("9", new Word("mother", POS.NOUN)),
 				new PatternReference("10", new Word("was", POS.VERB), new Word("penalised", POS.VERB),
 						new Word("extent", POS.NOUN), new Word("law", POS.NOUN)));
-
-		Stream<String> words = identifier.process(patterns);
-
-		List<String> list = words.collect(Collectors.toList());
-		// Only mother, brother and law appear often enough to be consider interaction words
-		assertTrue(list.contains("mother"));
-		assertTrue(list.contains("law"));
-		assertTrue(list.contains("brother"));
-		assertEquals(3, list.size());
-
 	}
 
 }
@@ -0,0 +1,56 @@
+package com.tenode.baleen.extras.job.interactions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.tenode.baleen.extras.job.interactions.data.PatternReferences;
+import com.tenode.baleen.extras.jobs.interactions.ThresholdEstimator;
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+
+public class ThresholdEstimatorTest {
+
+	private final Map<String, Integer> terms = new HashMap<>();
+
+	@Test
+	public void testEstimate() {
+		// The pairs sharing a term are (a, b) = 1/2, (a, d) = 1, (b, c) = 1/4 and (b, d) = 1/2
+		List<PatternReference> patterns = Arrays.asList(pattern("law"), pattern("law", "brother"),
+				pattern("brother", "step"), pattern("law"), pattern("mother"));
+
+		ThresholdEstimator min = new ThresholdEstimator(100, 0, 0);
+		assertEquals(0.25, min.estimate(patterns), 0.000001);
+		assertArrayEquals(new double[] { 0.25, 0.5, 0.5, 1.0 }, min.getSample(), 0.000001);
+
+		ThresholdEstimator max = new ThresholdEstimator(100, 1, 0);
+		assertEquals(1.0, max.estimate(patterns), 0.000001);
+	}
+
+	@Test
+	public void testSampleSize() {
+		List<PatternReference> patterns = Arrays.asList(pattern("law"), pattern("law", "brother"),
+				pattern("brother", "step"), pattern("law"), pattern("mother"));
+
+		ThresholdEstimator estimator = new ThresholdEstimator(2, 0.5, 0);
+		estimator.estimate(patterns);
+		assertEquals(2, estimator.getSample().length);
+	}
+
+	@Test
+	public void testNoSharedTerms() {
+		ThresholdEstimator estimator = new ThresholdEstimator();
+		assertTrue(Double.isNaN(estimator.estimate(Arrays.asList(pattern("law"), pattern("mother")))));
+		assertEquals(0, estimator.getSample().length);
+	}
+
+	private PatternReference pattern(String... lemmas) {
+		return PatternReferences.of(terms, lemmas);
+	}
+}
@@ -0,0 +1,37 @@
+package com.tenode.baleen.extras.job.interactions.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.tenode.baleen.extras.jobs.interactions.data.ClusterIndex;
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+
+public class ClusterIndexTest {
+
+	private final Map<String, Integer> terms = new HashMap<>();
+
+	@Test
+	public void testCandidates() {
+		ClusterIndex index = new ClusterIndex();
+
+		assertEquals(0, index.addCluster(pattern("brother", "law")));
+		assertEquals(1, index.addCluster(pattern("mother")));
+		assertEquals(2, index.addCluster(pattern("sister")));
+		index.add(1, pattern("step", "mother"));
+		index.add(0, pattern("law"));
+
+		assertEquals(3, index.size());
+		assertArrayEquals(new int[] { 0, 1 }, index.getCandidates(pattern("step", "brother", "law")));
+		assertArrayEquals(new int[] { 2 }, index.getCandidates(pattern("sister", "sister")));
+		assertArrayEquals(new int[0], index.getCandidates(pattern("father")));
+	}
+
+	private PatternReference pattern(String... lemmas) {
+		return PatternReferences.of(terms, lemmas);
+	}
+}
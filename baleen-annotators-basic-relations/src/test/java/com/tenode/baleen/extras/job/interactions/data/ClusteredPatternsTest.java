@@ -0,0 +1,80 @@
+package com.tenode.baleen.extras.job.interactions.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.tenode.baleen.extras.jobs.interactions.data.ClusteredPatterns;
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+
+public class ClusteredPatternsTest {
+
+	private final Map<String, Integer> terms = new HashMap<>();
+
+	@Test
+	public void testSimilarityIsMeanOfPatterns() {
+		PatternReference a = pattern("step", "brother", "law");
+		PatternReference b = pattern("brother", "law", "law");
+		PatternReference c = pattern("mother");
+		PatternReference query = pattern("brother", "law", "mother");
+
+		ClusteredPatterns cluster = new ClusteredPatterns(a);
+		assertEquals(a.calculateSimilarity(query), cluster.calculateSimilarity(query), 0.000001);
+
+		cluster.add(b);
+		cluster.add(c);
+		assertEquals(3, cluster.size());
+
+		double expected = (a.calculateSimilarity(query) + b.calculateSimilarity(query)
+				+ c.calculateSimilarity(query)) / 3;
+		assertEquals(expected, cluster.calculateSimilarity(query), 0.000001);
+		assertEquals(0, cluster.calculateSimilarity(pattern("father")), 0.000001);
+	}
+
+	@Test
+	public void testSimilarityAsTermsAreAdded() {
+		String[] lemmas = { "step", "brother", "law", "mother", "father", "sister", "son", "daughter" };
+		List<PatternReference> patterns = new ArrayList<>();
+		ClusteredPatterns cluster = new ClusteredPatterns();
+
+		// Number the terms in reverse, so the ids are not in the order the patterns first use them
+		for (int i = lemmas.length - 1; i >= 0; i--) {
+			terms.put(lemmas[i], terms.size());
+		}
+
+		// Patterns which add new terms before, between and after the existing ones, and which only
+		// repeat existing terms
+		for (int i = 0; i < 40; i++) {
+			PatternReference p = pattern(lemmas[i % lemmas.length], lemmas[i * 3 % lemmas.length],
+					lemmas[(i + 5) % lemmas.length]);
+			patterns.add(p);
+			cluster.add(p);
+
+			for (String lemma : lemmas) {
+				PatternReference query = pattern(lemma, "law");
+				double expected = patterns.stream().mapToDouble(q -> q.calculateSimilarity(query)).sum()
+						/ patterns.size();
+				assertEquals(expected, cluster.calculateSimilarity(query), 0.000001);
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new ClusteredPatterns().calculateSimilarity(pattern("brother")), 0.000001);
+
+		ClusteredPatterns cluster = new ClusteredPatterns(pattern("brother"));
+		cluster.add(pattern());
+		assertTrue(Double.isNaN(cluster.calculateSimilarity(pattern("brother"))));
+	}
+
+	private PatternReference pattern(String... lemmas) {
+		return PatternReferences.of(terms, lemmas);
+	}
+}
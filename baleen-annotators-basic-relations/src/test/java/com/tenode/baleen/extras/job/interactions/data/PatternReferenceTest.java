@@ -0,0 +1,56 @@
+package com.tenode.baleen.extras.job.interactions.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+import com.tenode.baleen.extras.jobs.interactions.data.Word;
+
+import net.sf.extjwnl.data.POS;
+
+public class PatternReferenceTest {
+
+	private Map<String, Integer> terms;
+
+	@Before
+	public void before() {
+		terms = new HashMap<>();
+		terms.put("brother", 0);
+		terms.put("law", 1);
+		terms.put("step", 2);
+		terms.put("mother", 3);
+	}
+
+	@Test
+	public void testTermFrequency() {
+		PatternReference pattern = new PatternReference("1", new Word("mother", POS.NOUN),
+				new Word("law", POS.NOUN), new Word("mother", POS.VERB), new Word("unknown", POS.NOUN));
+		pattern.calculateTermFrequency(terms);
+
+		assertArrayEquals(new int[] { 1, 3 }, pattern.getTermIds());
+		assertArrayEquals(new int[] { 1, 2 }, pattern.getTermCounts());
+		assertEquals(3, pattern.getTFMagnitude());
+	}
+
+	@Test
+	public void testSimilarity() {
+		PatternReference a = new PatternReference("1", new Word("step", POS.NOUN), new Word("brother", POS.NOUN),
+				new Word("law", POS.NOUN));
+		PatternReference b = new PatternReference("2", new Word("brother", POS.NOUN), new Word("law", POS.NOUN));
+		PatternReference c = new PatternReference("3", new Word("mother", POS.NOUN));
+		a.calculateTermFrequency(terms);
+		b.calculateTermFrequency(terms);
+		c.calculateTermFrequency(terms);
+
+		assertEquals(2.0 / 6, a.calculateSimilarity(b), 0.0001);
+		assertEquals(2.0 / 6, b.calculateSimilarity(a), 0.0001);
+		assertEquals(0.5, b.calculateSimilarity(b), 0.0001);
+		assertEquals(0, a.calculateSimilarity(c), 0.0001);
+	}
+}
@@ -0,0 +1,39 @@
+package com.tenode.baleen.extras.job.interactions.data;
+
+import java.util.Map;
+
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+import com.tenode.baleen.extras.jobs.interactions.data.Word;
+
+import net.sf.extjwnl.data.POS;
+
+/**
+ * Creates patterns for the clustering tests.
+ */
+public final class PatternReferences {
+
+	private PatternReferences() {
+		// Singleton
+	}
+
+	/**
+	 * Create a pattern of nouns, with its term frequency calculated.
+	 *
+	 * @param terms
+	 *            the term ids, new lemmas are added with the next id
+	 * @param lemmas
+	 *            the lemmas of the words in the pattern
+	 * @return the pattern
+	 */
+	public static PatternReference of(Map<String, Integer> terms, String... lemmas) {
+		Word[] words = new Word[lemmas.length];
+		for (int i = 0; i < lemmas.length; i++) {
+			terms.putIfAbsent(lemmas[i], terms.size());
+			words[i] = new Word(lemmas[i], POS.NOUN);
+		}
+
+		PatternReference pattern = new PatternReference("p", words);
+		pattern.calculateTermFrequency(terms);
+		return pattern;
+	}
+}
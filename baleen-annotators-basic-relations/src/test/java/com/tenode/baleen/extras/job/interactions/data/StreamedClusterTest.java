@@ -0,0 +1,61 @@
+package com.tenode.baleen.extras.job.interactions.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.tenode.baleen.extras.jobs.interactions.data.ClusteredPatterns;
+import com.tenode.baleen.extras.jobs.interactions.data.PatternReference;
+import com.tenode.baleen.extras.jobs.interactions.data.StreamedCluster;
+import com.tenode.baleen.extras.jobs.interactions.data.Word;
+
+import net.sf.extjwnl.data.POS;
+
+public class StreamedClusterTest {
+
+	private final Map<String, Integer> terms = new HashMap<>();
+
+	@Test
+	public void testSameAsClusteredPatterns() {
+		PatternReference a = pattern("step", "brother", "law");
+		PatternReference b = pattern("brother", "law", "law");
+		PatternReference query = pattern("brother", "mother");
+
+		StreamedCluster cluster = new StreamedCluster();
+		cluster.add(a);
+		cluster.add(b);
+		ClusteredPatterns expected = new ClusteredPatterns(a);
+		expected.add(b);
+
+		assertFalse(cluster.isSeeded());
+		assertEquals(2, cluster.size());
+		assertEquals(expected.calculateSimilarity(query), cluster.calculateSimilarity(query), 0.000001);
+		assertEquals(Long.valueOf(3), cluster.getWordCounts().get(new Word("law", POS.NOUN)));
+		assertEquals(Long.valueOf(1), cluster.getWordCounts().get(new Word("step", POS.NOUN)));
+	}
+
+	@Test
+	public void testSeeded() {
+		StreamedCluster previous = new StreamedCluster();
+		previous.add(pattern("mother"));
+
+		StreamedCluster cluster = new StreamedCluster(previous.getCentroid());
+		assertTrue(cluster.isSeeded());
+		assertEquals(0, cluster.size());
+
+		// Scored against the seed, not the patterns added
+		cluster.add(pattern("brother"));
+		assertEquals(1.0, cluster.calculateSimilarity(pattern("mother")), 0.000001);
+		assertEquals(0.0, cluster.calculateSimilarity(pattern("brother")), 0.000001);
+		assertEquals(1, cluster.size());
+	}
+
+	private PatternReference pattern(String... lemmas) {
+		return PatternReferences.of(terms, lemmas);
+	}
+}
@@ -0,0 +1,71 @@
+package com.tenode.baleen.extras.jobs.interactions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// In the main package (unlike the other job tests) as BestClusterTask is package private
+public class BestClusterTaskTest {
+
+	// Enough to be split into many chunks
+	private static final int CANDIDATES = 10000;
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void before() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void after() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testTieInDifferentChunks() {
+		// The equal best scores are in different chunks, the earlier must win
+		assertSameAsSequential(i -> i == 3000 || i == 7000 ? 1.0 : score(i), 3000);
+	}
+
+	@Test
+	public void testBestInLaterChunk() {
+		assertSameAsSequential(i -> i == 9001 ? 1.0 : score(i), 9001);
+	}
+
+	@Test
+	public void testNaNNeverChosen() {
+		// NaN everywhere but two small scores
+		assertSameAsSequential(i -> i == 100 ? 0.1 : i == 8000 ? 0.2 : Double.NaN, 8000);
+	}
+
+	@Test
+	public void testAllNaN() {
+		assertSameAsSequential(i -> Double.NaN, -1);
+	}
+
+	private void assertSameAsSequential(IntToDoubleFunction similarity, int expected) {
+		// Only every other cluster is a candidate, so the indexes differ from the positions
+		int[] candidates = IntStream.range(0, CANDIDATES).map(i -> i * 2 + 1).toArray();
+		IntToDoubleFunction byCluster = c -> similarity.applyAsDouble((c - 1) / 2);
+
+		BestClusterTask.Best sequential = BestClusterTask.score(byCluster, candidates, 0, candidates.length);
+		BestClusterTask.Best parallel = pool.invoke(new BestClusterTask(byCluster, candidates, 0, candidates.length));
+
+		int expectedCluster = expected == -1 ? -1 : expected * 2 + 1;
+		assertEquals(expectedCluster, sequential.getCluster());
+		assertEquals(expectedCluster, parallel.getCluster());
+		assertEquals(sequential.getScore(), parallel.getScore(), 0);
+	}
+
+	// Scores below 1, with NaN for every seventh
+	private static double score(int i) {
+		return i % 7 == 0 ? Double.NaN : i % 100 / 1000.0;
+	}
+}
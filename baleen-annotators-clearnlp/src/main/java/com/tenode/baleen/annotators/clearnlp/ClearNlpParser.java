@@ -9,6 +9,8 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import com.tenode.baleen.extras.common.jcas.CoverageIndex;
+
 import edu.emory.clir.clearnlp.component.mode.dep.AbstractDEPParser;
 import edu.emory.clir.clearnlp.component.mode.dep.DEPConfiguration;
 import edu.emory.clir.clearnlp.component.utils.NLPUtils;
@@ -49,8 +51,10 @@ public class ClearNlpParser extends BaleenAnnotator {
 	@Override
 	protected void doProcess(final JCas jCas) throws AnalysisEngineProcessException {
 
+		final CoverageIndex<Sentence, WordToken> wordIndex = CoverageIndex.build(jCas, WordToken.class);
+
 		for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
-			final List<WordToken> tokens = JCasUtil.selectCovered(jCas, WordToken.class, sentence);
+			final List<WordToken> tokens = wordIndex.getCovered(sentence);
 
 			final DEPTree tree = ClearNlpParser.createTreeFromTokens(tokens);
 
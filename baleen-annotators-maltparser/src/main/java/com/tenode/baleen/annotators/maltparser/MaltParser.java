@@ -19,6 +19,8 @@ import org.maltparser.concurrent.graph.ConcurrentDependencyGraph;
 import org.maltparser.concurrent.graph.ConcurrentDependencyNode;
 import org.maltparser.core.exception.MaltChainedException;
 
+import com.tenode.baleen.extras.common.jcas.CoverageIndex;
+
 import uk.gov.dstl.baleen.types.language.Dependency;
 import uk.gov.dstl.baleen.types.language.Sentence;
 import uk.gov.dstl.baleen.types.language.WordLemma;
@@ -100,9 +102,11 @@ public class MaltParser extends BaleenAnnotator {
 	@Override
 	protected void doProcess(final JCas jCas) throws AnalysisEngineProcessException {
 
+		final CoverageIndex<Sentence, WordToken> wordIndex = CoverageIndex.build(jCas, WordToken.class);
+
 		for (final Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
 
-			final List<WordToken> wordTokens = JCasUtil.selectCovered(jCas, WordToken.class, sentence);
+			final List<WordToken> wordTokens = wordIndex.getCovered(sentence);
 
 			final String[] tokens = new String[wordTokens.size()];
 
@@ -1,18 +1,21 @@
 package com.tenode.baleen.extras.common.grammar;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
-
 import uk.gov.dstl.baleen.types.language.Dependency;
 import uk.gov.dstl.baleen.types.language.WordToken;
 
@@ -23,23 +26,85 @@ import uk.gov.dstl.baleen.types.language.WordToken;
  * and slow to query. This class builds a cache which means finding nearest neighbours (based on
  * dependency distance) faster and easier.
  *
+ * Internally each word is mapped to a dense integer id when the graph is built and the (undirected)
+ * edges are held in compressed sparse row form: the neighbours of word i are
+ * targets[offsets[i]..offsets[i+1]). This avoids a hash entry per edge, which matters as one graph
+ * is built per document.
+ *
+ * A labelled graph (see buildLabelled()) holds every dependency whatever its type. The dependency
+ * types are interned into a small dictionary and each edge slot holds the type id and direction
+ * packed into a single int, so traversal can be limited to certain types (eg nsubj, dobj).
+ *
  * The JCAS must have been annotated by a dependency grammer (MaltParser, ClearNlp) before passing
  * to build().
  *
+ * Shortest path results are cached as they are requested, so a graph should not be shared between
+ * threads.
+ *
  */
 public class DependencyGraph {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraph.class);
 
-	private final SetMultimap<WordToken, WordToken> edges = HashMultimap.create();
+	private final Map<WordToken, Integer> ids;
 
-	private DependencyGraph() {
+	private final WordToken[] words;
 
-	}
+	private final int[] offsets;
+
+	private final int[] targets;
+
+	// Per edge slot: (label id << 1) | 1 if the target is the dependent of the edge
+	private final int[] edgeLabels;
+
+	private final Map<String, Integer> labelIds;
+
+	// All pairs shortest paths, row i is filled on demand by a breadth first search from word i
+	private final int[][] pathDistances;
+
+	private final int[][] pathPredecessors;
+
+	// Scratch space reused by each Traversal, allocated on first use. A node has been reached by the
+	// current traversal if its stamp is the current generation, so nothing is cleared between
+	// traversals and the cost of one scales with the nodes it visits.
+	private int[] visitStamps;
+
+	private int[] visitBudgets;
+
+	private int visitGeneration;
 
-	private void addEdge(final WordToken governor, final WordToken dependent) {
-		edges.put(governor, dependent);
-		edges.put(dependent, governor);
+	private DependencyGraph(final Map<WordToken, Integer> ids, final WordToken[] words, final int[] governors,
+			final int[] dependents, final int[] labels, final int edgeCount, final Map<String, Integer> labelIds) {
+		this.ids = ids;
+		this.words = words;
+		this.labelIds = labelIds;
+
+		// Count the degree of each node (each edge is stored in both directions)
+		offsets = new int[words.length + 1];
+		for (int i = 0; i < edgeCount; i++) {
+			offsets[governors[i] + 1]++;
+			offsets[dependents[i] + 1]++;
+		}
+		for (int i = 0; i < words.length; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		// Fill the targets, using a cursor per node
+		targets = new int[2 * edgeCount];
+		edgeLabels = new int[2 * edgeCount];
+		final int[] cursor = Arrays.copyOf(offsets, words.length);
+		for (int i = 0; i < edgeCount; i++) {
+			final int toDependent = cursor[governors[i]]++;
+			targets[toDependent] = dependents[i];
+			edgeLabels[toDependent] = labels[i] << 1 | 1;
+
+			final int toGovernor = cursor[dependents[i]]++;
+			targets[toGovernor] = governors[i];
+			edgeLabels[toGovernor] = labels[i] << 1;
+		}
+
+		pathDistances = new int[words.length][];
+		pathPredecessors = new int[words.length][];
 	}
 
 	/**
@@ -68,19 +133,44 @@ public class DependencyGraph {
 	 */
 	public Set<WordToken> extractWords(final int distance, final Collection<Dependency> start) {
 		final Set<WordToken> words = new HashSet<>();
-
-		if (distance <= 0) {
-			return words;
+		if (distance > 0) {
+			traverseDependencies(distance, start).collect(words);
 		}
+		return words;
+	}
 
-		final int governorDistance = distance - 1;
-		for (final Dependency d : start) {
-			if (governorDistance > 0) {
-				extractWords(words, governorDistance, d.getGovernor());
-			}
-			extractWords(words, distance, d.getDependent());
-		}
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start
+	 * dependencies, with the number of hops to reach each.
+	 *
+	 * The governor of a start dependency is one hop from it, the dependent is zero hops.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param start
+	 *            array / of words to start from
+	 * @return map of words within range to their hop distance
+	 */
+	public Map<WordToken, Integer> extractWordsWithDistance(final int distance, final Dependency... start) {
+		return extractWordsWithDistance(distance, Arrays.asList(start));
+	}
 
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start
+	 * dependencies, with the number of hops to reach each.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param start
+	 *            the start words (as list)
+	 * @return map of words within range to their hop distance
+	 */
+	public Map<WordToken, Integer> extractWordsWithDistance(final int distance,
+			final Collection<Dependency> start) {
+		final Map<WordToken, Integer> words = new HashMap<>();
+		if (distance > 0) {
+			traverseDependencies(distance, start).collect(words);
+		}
 		return words;
 	}
 
@@ -110,40 +200,376 @@ public class DependencyGraph {
 	 */
 	public Set<WordToken> nearestWords(final int distance, final Collection<WordToken> start) {
 		final Set<WordToken> words = new HashSet<>();
-
-		if (distance <= 0) {
-			return words;
+		if (distance > 0) {
+			traverseWords(distance, start).collect(words);
 		}
+		return words;
+	}
+
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start words,
+	 * with the number of hops to reach each.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param start
+	 *            array / of words to start from
+	 * @return map of words within range to their hop distance
+	 */
+	public Map<WordToken, Integer> nearestWordsWithDistance(final int distance, final WordToken... start) {
+		return nearestWordsWithDistance(distance, Arrays.asList(start));
+	}
 
-		for (final WordToken d : start) {
-			extractWords(words, distance, d);
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start words,
+	 * with the number of hops to reach each.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param start
+	 *            the start words (as list)
+	 * @return map of words within range to their hop distance
+	 */
+	public Map<WordToken, Integer> nearestWordsWithDistance(final int distance,
+			final Collection<WordToken> start) {
+		final Map<WordToken, Integer> words = new HashMap<>();
+		if (distance > 0) {
+			traverseWords(distance, start).collect(words);
 		}
+		return words;
+	}
+
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start words,
+	 * only following dependencies of the given types.
+	 *
+	 * This is only useful on a graph from buildLabelled(), as build() only retains untyped and ROOT
+	 * dependencies.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param types
+	 *            the dependency types to follow (eg nsubj, dobj)
+	 * @param start
+	 *            array / of words to start from
+	 * @return the (set of) words within range
+	 */
+	public Set<WordToken> nearestWordsFollowing(final int distance, final Collection<String> types,
+			final WordToken... start) {
+		return nearestWordsFollowing(distance, types, Arrays.asList(start));
+	}
 
+	/**
+	 * Find the nearest neighbours within dependency distance links of the provided start words,
+	 * only following dependencies of the given types.
+	 *
+	 * @param distance
+	 *            the dependency distance
+	 * @param types
+	 *            the dependency types to follow (eg nsubj, dobj)
+	 * @param start
+	 *            the start words (as list)
+	 * @return the (set of) words within range
+	 */
+	public Set<WordToken> nearestWordsFollowing(final int distance, final Collection<String> types,
+			final Collection<WordToken> start) {
+		final Set<WordToken> words = new HashSet<>();
+		if (distance > 0) {
+			final Traversal traversal = new Traversal(distance, start.size(), toLabelFilter(types));
+			for (final WordToken w : start) {
+				traversal.seed(w, distance);
+			}
+			traversal.run();
+			traversal.collect(words);
+		}
 		return words;
+	}
 
+	/**
+	 * Get the words which are dependents of the governor.
+	 *
+	 * @param governor
+	 *            the governor
+	 * @param types
+	 *            the dependency types to include, or none for all types
+	 * @return the dependent words (empty if none)
+	 */
+	public List<WordToken> getDependents(final WordToken governor, final String... types) {
+		return getNeighbours(governor, true, types);
 	}
 
-	private void extractWords(final Set<WordToken> collector, final int distance, final WordToken token) {
-		// The word itself
-		collector.add(token);
+	/**
+	 * Get the words which are governors of the dependent.
+	 *
+	 * @param dependent
+	 *            the dependent
+	 * @param types
+	 *            the dependency types to include, or none for all types
+	 * @return the governor words (empty if none)
+	 */
+	public List<WordToken> getGovernors(final WordToken dependent, final String... types) {
+		return getNeighbours(dependent, false, types);
+	}
 
-		// TODO: Depth first, We potentially revisit the same node repeatedly,
-		// so this could be more efficient.
+	private List<WordToken> getNeighbours(final WordToken word, final boolean toDependent, final String... types) {
+		final Integer id = ids.get(word);
+		if (id == null) {
+			return Collections.emptyList();
+		}
 
-		final Set<WordToken> set = edges.get(token);
+		final boolean[] filter = types.length == 0 ? null : toLabelFilter(Arrays.asList(types));
+		final int direction = toDependent ? 1 : 0;
 
-		if (set != null) {
-			collector.addAll(set);
+		final List<WordToken> neighbours = new ArrayList<>();
+		for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+			final int label = edgeLabels[j];
+			if ((label & 1) == direction && (filter == null || filter[label >> 1])) {
+				neighbours.add(words[targets[j]]);
+			}
+		}
+		return neighbours;
+	}
 
-			final int newDistance = distance - 1;
-			if (newDistance > 0) {
-				set.forEach(a -> {
-					extractWords(collector, newDistance, a);
-				});
+	private boolean[] toLabelFilter(final Collection<String> types) {
+		final boolean[] filter = new boolean[labelIds.size()];
+		for (final String type : types) {
+			final Integer labelId = labelIds.get(type);
+			if (labelId != null) {
+				filter[labelId] = true;
+			}
+		}
+		return filter;
+	}
 
+	private Traversal traverseDependencies(final int distance, final Collection<Dependency> start) {
+		final Traversal traversal = new Traversal(distance, 2 * start.size(), null);
+		for (final Dependency d : start) {
+			if (distance > 1) {
+				traversal.seed(d.getGovernor(), distance - 1);
 			}
+			traversal.seed(d.getDependent(), distance);
+		}
+		traversal.run();
+		return traversal;
+	}
+
+	private Traversal traverseWords(final int distance, final Collection<WordToken> start) {
+		final Traversal traversal = new Traversal(distance, start.size(), null);
+		for (final WordToken w : start) {
+			traversal.seed(w, distance);
+		}
+		traversal.run();
+		return traversal;
+	}
+
+	/**
+	 * Get the dependency distance (number of hops) between two words.
+	 *
+	 * The first query from a word performs a breadth first search over the graph and caches the
+	 * distances to every other word, subsequent queries from that word are simple lookups. As the
+	 * graph of a sentence is small, this quickly becomes an all pairs table (see
+	 * PartitionedDependencyGraph).
+	 *
+	 * @param from
+	 *            the start word
+	 * @param to
+	 *            the end word
+	 * @return the distance, or -1 if there is no path between the words
+	 */
+	public int distance(final WordToken from, final WordToken to) {
+		if (from == to) {
+			return 0;
+		}
+
+		final Integer fromId = ids.get(from);
+		final Integer toId = ids.get(to);
+		if (fromId == null || toId == null) {
+			return -1;
 		}
 
+		return getPathDistances(fromId)[toId];
+	}
+
+	/**
+	 * Get a shortest path of dependencies between two words.
+	 *
+	 * @see #distance(WordToken, WordToken)
+	 * @param from
+	 *            the start word
+	 * @param to
+	 *            the end word
+	 * @return the words on the path, including from and to (empty if there is no path)
+	 */
+	public List<WordToken> shortestPath(final WordToken from, final WordToken to) {
+		final int distance = distance(from, to);
+		if (distance < 0) {
+			return Collections.emptyList();
+		} else if (distance == 0) {
+			return Collections.singletonList(from);
+		}
+
+		final int fromId = ids.get(from);
+		final int[] predecessors = pathPredecessors[fromId];
+
+		// Walk back from the end word
+		final WordToken[] path = new WordToken[distance + 1];
+		int id = ids.get(to);
+		for (int i = distance; i >= 0; i--) {
+			path[i] = words[id];
+			id = predecessors[id];
+		}
+		return Arrays.asList(path);
+	}
+
+	private int[] getPathDistances(final int source) {
+		int[] distances = pathDistances[source];
+		if (distances != null) {
+			return distances;
+		}
+
+		distances = new int[words.length];
+		final int[] predecessors = new int[words.length];
+		Arrays.fill(distances, -1);
+		Arrays.fill(predecessors, -1);
+
+		final int[] queue = new int[words.length];
+		int head = 0;
+		int tail = 0;
+		distances[source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			final int id = queue[head++];
+			for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+				final int neighbour = targets[j];
+				if (distances[neighbour] < 0) {
+					distances[neighbour] = distances[id] + 1;
+					predecessors[neighbour] = id;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+
+		pathPredecessors[source] = predecessors;
+		pathDistances[source] = distances;
+		return distances;
+	}
+
+	/**
+	 * A bounded breadth first search from a set of seeds, each with its own budget of hops.
+	 *
+	 * Levels are processed from the largest remaining budget downwards, so the first time a node
+	 * is reached is with the best budget it can have. Each node is therefore queued and expanded
+	 * at most once.
+	 *
+	 * Only one traversal may be in use at a time, as they share the graph's visit stamps.
+	 */
+	private final class Traversal {
+
+		private static final int INITIAL_QUEUE_SIZE = 16;
+
+		private final int distance;
+
+		// Label ids which may be followed, or null for all
+		private final boolean[] follow;
+
+		private final int[] seedIds;
+
+		private final int[] seedBudgets;
+
+		private int seedCount;
+
+		// Start words which are not in the graph, with their hop distance
+		private final Map<WordToken, Integer> outside = new HashMap<>();
+
+		// Reached nodes, in the order visited
+		private int[] queue = new int[INITIAL_QUEUE_SIZE];
+
+		private int size;
+
+		Traversal(final int distance, final int maxSeeds, final boolean[] follow) {
+			this.distance = distance;
+			this.follow = follow;
+			seedIds = new int[maxSeeds];
+			seedBudgets = new int[maxSeeds];
+
+			if (visitStamps == null) {
+				visitStamps = new int[words.length];
+				visitBudgets = new int[words.length];
+			}
+			visitGeneration++;
+			if (visitGeneration == 0) {
+				// Wrapped around, so old stamps could match
+				Arrays.fill(visitStamps, 0);
+				visitGeneration = 1;
+			}
+		}
+
+		void seed(final WordToken token, final int budget) {
+			if (token == null) {
+				return;
+			}
+
+			final Integer id = ids.get(token);
+			if (id == null) {
+				// The word itself, even though it has no dependencies
+				outside.merge(token, distance - budget, Math::min);
+			} else {
+				seedIds[seedCount] = id;
+				seedBudgets[seedCount] = budget;
+				seedCount++;
+			}
+		}
+
+		void run() {
+			int head = 0;
+			for (int level = distance; level >= 0; level--) {
+				for (int i = 0; i < seedCount; i++) {
+					if (seedBudgets[i] == level) {
+						visit(seedIds[i], level);
+					}
+				}
+
+				// Everything queued from head onwards has exactly this budget
+				final int levelEnd = size;
+				if (level > 0) {
+					for (; head < levelEnd; head++) {
+						final int id = queue[head];
+						for (int j = offsets[id]; j < offsets[id + 1]; j++) {
+							if (follow == null || follow[edgeLabels[j] >> 1]) {
+								visit(targets[j], level - 1);
+							}
+						}
+					}
+				}
+				head = levelEnd;
+			}
+		}
+
+		private void visit(final int id, final int budget) {
+			if (visitStamps[id] != visitGeneration) {
+				visitStamps[id] = visitGeneration;
+				visitBudgets[id] = budget;
+				if (size == queue.length) {
+					queue = Arrays.copyOf(queue, 2 * size);
+				}
+				queue[size++] = id;
+			}
+		}
+
+		void collect(final Set<WordToken> collector) {
+			collector.addAll(outside.keySet());
+			for (int i = 0; i < size; i++) {
+				collector.add(words[queue[i]]);
+			}
+		}
+
+		void collect(final Map<WordToken, Integer> collector) {
+			collector.putAll(outside);
+			for (int i = 0; i < size; i++) {
+				final int id = queue[i];
+				collector.put(words[id], distance - visitBudgets[id]);
+			}
+		}
 	}
 
 	/**
@@ -151,11 +577,13 @@ public class DependencyGraph {
 	 */
 	public void log() {
 		final StringBuilder sb = new StringBuilder();
-		edges.asMap().entrySet().stream().forEach(e -> {
-			sb.append(e.getKey().getCoveredText());
+		for (int i = 0; i < words.length; i++) {
+			sb.append(words[i].getCoveredText());
 			sb.append("\n");
-			e.getValue().stream().forEach(w -> sb.append("\t" + w.getCoveredText()));
-		});
+			for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+				sb.append("\t" + words[targets[j]].getCoveredText());
+			}
+		}
 
 		DependencyGraph.LOGGER.info("Dependeny graph: {}", sb.toString());
 	}
@@ -166,20 +594,91 @@ public class DependencyGraph {
 	 *
 	 * Thus the JCAS as Dependency annotations.
 	 *
+	 * Only untyped and ROOT dependencies are included, see buildLabelled() for all dependencies.
+	 *
 	 * @param jCas
 	 *            the jCAS to process.
 	 * @return the dependency graph (non-null)
 	 */
 	public static DependencyGraph build(final JCas jCas) {
-		final DependencyGraph graph = new DependencyGraph();
+		return build(JCasUtil.select(jCas, Dependency.class), false);
+	}
+
+	/**
+	 * Build a dependency graph from the dependencies covered by an annotation (typically a
+	 * Sentence).
+	 *
+	 * Dependencies do not cross sentence boundaries, so a graph built for a sentence answers the
+	 * same queries (for words in that sentence) as the graph of the whole document.
+	 *
+	 * @param jCas
+	 *            the jCAS to process.
+	 * @param covering
+	 *            the annotation covering the dependencies to include
+	 * @return the dependency graph (non-null)
+	 */
+	public static DependencyGraph build(final JCas jCas, final Annotation covering) {
+		return build(JCasUtil.selectCovered(jCas, Dependency.class, covering), false);
+	}
 
-		JCasUtil.select(jCas, Dependency.class).stream().forEach(d -> {
-			if ((d.getDependencyType() == null || d.getDependencyType().equals("ROOT")) && d.getGovernor() != null
+	/**
+	 * Build a dependency graph holding every dependency, labelled with its dependency type.
+	 *
+	 * @param jCas
+	 *            the jCAS to process.
+	 * @return the dependency graph (non-null)
+	 */
+	public static DependencyGraph buildLabelled(final JCas jCas) {
+		return build(JCasUtil.select(jCas, Dependency.class), true);
+	}
+
+	/**
+	 * Build a dependency graph holding every dependency covered by an annotation (typically a
+	 * Sentence), labelled with its dependency type.
+	 *
+	 * @param jCas
+	 *            the jCAS to process.
+	 * @param covering
+	 *            the annotation covering the dependencies to include
+	 * @return the dependency graph (non-null)
+	 */
+	public static DependencyGraph buildLabelled(final JCas jCas, final Annotation covering) {
+		return build(JCasUtil.selectCovered(jCas, Dependency.class, covering), true);
+	}
+
+	private static DependencyGraph build(final Collection<Dependency> dependencies, final boolean allTypes) {
+		final Map<WordToken, Integer> ids = new HashMap<>();
+		final Map<String, Integer> labelIds = new HashMap<>();
+		final WordToken[] words = new WordToken[2 * dependencies.size()];
+		final int[] governors = new int[dependencies.size()];
+		final int[] dependents = new int[dependencies.size()];
+		final int[] labels = new int[dependencies.size()];
+
+		int edgeCount = 0;
+		for (final Dependency d : dependencies) {
+			final String type = d.getDependencyType();
+			if ((allTypes || type == null || type.equals("ROOT")) && d.getGovernor() != null
 					&& d.getDependent() != null) {
-				graph.addEdge(d.getGovernor(), d.getDependent());
+				governors[edgeCount] = toId(ids, words, d.getGovernor());
+				dependents[edgeCount] = toId(ids, words, d.getDependent());
+				labels[edgeCount] = labelIds.computeIfAbsent(type, k -> labelIds.size());
+				edgeCount++;
 			}
-		});
+		}
+
+		return new DependencyGraph(ids, Arrays.copyOf(words, ids.size()), governors, dependents, labels, edgeCount,
+				labelIds);
+	}
+
+	private static int toId(final Map<WordToken, Integer> ids, final WordToken[] words, final WordToken word) {
+		final Integer existing = ids.get(word);
+		if (existing != null) {
+			return existing;
+		}
 
-		return graph;
+		final int id = ids.size();
+		ids.put(word, id);
+		words[id] = word;
+		return id;
 	}
-}
\ No newline at end of file
+}
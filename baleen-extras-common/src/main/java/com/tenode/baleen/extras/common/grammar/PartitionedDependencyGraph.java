@@ -0,0 +1,93 @@
+package com.tenode.baleen.extras.common.grammar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.uima.jcas.JCas;
+
+import uk.gov.dstl.baleen.types.language.Sentence;
+
+/**
+ * A set of dependency graphs for a jCas, one per sentence, built on demand.
+ *
+ * Dependencies never cross sentence boundaries so there is no need to build a graph of the whole
+ * document. Annotators which only look at some sentences (for example those with interactions) only
+ * pay for building those, and can release each graph once they have finished with the sentence.
+ *
+ * The JCAS must have been annotated by a dependency grammer (MaltParser, ClearNlp) before use.
+ *
+ */
+public class PartitionedDependencyGraph {
+
+	private final JCas jCas;
+
+	private final boolean labelled;
+
+	private final Map<Sentence, DependencyGraph> graphs = new HashMap<>();
+
+	/**
+	 * Instantiates a new partitioned dependency graph over the jCas.
+	 *
+	 * No graphs are built until they are requested.
+	 *
+	 * @param jCas
+	 *            the jCas (with Sentence and Dependency annotations)
+	 */
+	public PartitionedDependencyGraph(final JCas jCas) {
+		this(jCas, false);
+	}
+
+	/**
+	 * Instantiates a new partitioned dependency graph over the jCas.
+	 *
+	 * @param jCas
+	 *            the jCas (with Sentence and Dependency annotations)
+	 * @param labelled
+	 *            true to build labelled graphs holding every dependency type
+	 * @see DependencyGraph#buildLabelled(JCas)
+	 */
+	public PartitionedDependencyGraph(final JCas jCas, final boolean labelled) {
+		this.jCas = jCas;
+		this.labelled = labelled;
+	}
+
+	/**
+	 * Gets the dependency graph for the sentence, building it if required.
+	 *
+	 * @param sentence
+	 *            the sentence
+	 * @return the dependency graph (non-null)
+	 */
+	public DependencyGraph getGraph(final Sentence sentence) {
+		return graphs.computeIfAbsent(sentence,
+				s -> labelled ? DependencyGraph.buildLabelled(jCas, s) : DependencyGraph.build(jCas, s));
+	}
+
+	/**
+	 * Checks if the graph for the sentence has been built (and not released).
+	 *
+	 * @param sentence
+	 *            the sentence
+	 * @return true, if built
+	 */
+	public boolean isBuilt(final Sentence sentence) {
+		return graphs.containsKey(sentence);
+	}
+
+	/**
+	 * Release the graph for the sentence, it will be rebuilt if requested again.
+	 *
+	 * @param sentence
+	 *            the sentence
+	 */
+	public void release(final Sentence sentence) {
+		graphs.remove(sentence);
+	}
+
+	/**
+	 * Release all the graphs built so far.
+	 */
+	public void releaseAll() {
+		graphs.clear();
+	}
+}
@@ -1,7 +1,8 @@
 package com.tenode.baleen.extras.common.jcas;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,8 @@ public final class AnnotationUtils {
 	/**
 	 * Gets the first annotation which is covered (below) by the provided annotation.
 	 *
+	 * If this is called repeatedly (eg for every sentence) build a CoverageIndex instead.
+	 *
 	 * @param <T>
 	 *            the generic type of annotation
 	 * @param clazz
@@ -40,7 +43,11 @@ public final class AnnotationUtils {
 	/**
 	 * Filter only the top level annotations (that is remove all the covered annotations).
 	 *
-	 * This is not too efficient, but is should work with any ordering.
+	 * This works with any ordering, and the result is in the same order as the input. Annotations
+	 * with identical spans cover each other, so are both removed.
+	 *
+	 * The annotations are sorted by begin (then longest first) and swept once, so this is
+	 * O(n log n).
 	 *
 	 * @param <T>
 	 *            the generic type of the annotation
@@ -49,25 +56,60 @@ public final class AnnotationUtils {
 	 * @return a new list of containing just the top level (uncovered) annotations
 	 */
 	public static <T extends Annotation> List<T> filterToTopLevelAnnotations(final Collection<T> annotations) {
-		final List<T> topLevel = new LinkedList<>();
+		final List<T> input = new ArrayList<>(annotations);
+		final int size = input.size();
+
+		final Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> {
+			final Annotation a = input.get(x);
+			final Annotation b = input.get(y);
+			final int compare = Integer.compare(a.getBegin(), b.getBegin());
+			return compare != 0 ? compare : Integer.compare(b.getEnd(), a.getEnd());
+		});
+
+		// Everything before an annotation in this order begins at or before it, so it is covered if
+		// any of those ends at or after it. Otherwise it can only be covered by a different
+		// annotation with an identical span, which will be in the same run of the sort.
+		final boolean[] covered = new boolean[size];
+		int maxEnd = Integer.MIN_VALUE;
+		int i = 0;
+		while (i < size) {
+			final Annotation first = input.get(order[i]);
 
-		for (final T a : annotations) {
-			boolean covered = false;
-			for (final T b : annotations) {
-				if (a != b && b.getBegin() <= a.getBegin() && a.getEnd() <= b.getEnd()) {
-					covered = true;
-					break;
+			int runEnd = i + 1;
+			boolean distinct = false;
+			while (runEnd < size && isSameSpan(first, input.get(order[runEnd]))) {
+				distinct |= input.get(order[runEnd]) != first;
+				runEnd++;
+			}
+
+			if (distinct || maxEnd >= first.getEnd()) {
+				for (int j = i; j < runEnd; j++) {
+					covered[order[j]] = true;
 				}
 			}
 
-			if (!covered) {
-				topLevel.add(a);
+			maxEnd = Math.max(maxEnd, first.getEnd());
+			i = runEnd;
+		}
+
+		final List<T> topLevel = new ArrayList<>();
+		for (int j = 0; j < size; j++) {
+			if (!covered[j]) {
+				topLevel.add(input.get(j));
 			}
 		}
 
 		return topLevel;
 	}
 
+	private static boolean isSameSpan(final Annotation a, final Annotation b) {
+		return a.getBegin() == b.getBegin() && a.getEnd() == b.getEnd();
+	}
+
 	/**
 	 * Checks if an annotation is in between the source and target entities (in the sentence).
 	 *
@@ -0,0 +1,151 @@
+package com.tenode.baleen.extras.common.jcas;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * An index of the annotations of one type which are covered by annotations of another type (eg the
+ * WordTokens in a Sentence).
+ *
+ * JCasUtil.selectCovered walks the UIMA index on every call. This index is built once per JCas
+ * from a single select, holding the begin and end offsets of the covered annotations in sorted
+ * arrays, so each query is a binary search followed by a scan of the matching range.
+ *
+ * The results are the same as JCasUtil.selectCovered: annotations which begin and end within the
+ * covering annotation (excluding the covering annotation itself), in index order. The index is not
+ * updated if annotations are later added to or removed from the JCas.
+ *
+ * @param <C>
+ *            the covering annotation type
+ * @param <T>
+ *            the covered annotation type
+ */
+public final class CoverageIndex<C extends Annotation, T extends Annotation> {
+
+	private final List<T> annotations;
+
+	private final int[] begins;
+
+	private final int[] ends;
+
+	private CoverageIndex(final Collection<T> annotations) {
+		this.annotations = new ArrayList<>(annotations);
+
+		final int size = this.annotations.size();
+		begins = new int[size];
+		ends = new int[size];
+		for (int i = 0; i < size; i++) {
+			final T a = this.annotations.get(i);
+			begins[i] = a.getBegin();
+			ends[i] = a.getEnd();
+		}
+	}
+
+	/**
+	 * Gets the first annotation (in index order) covered by the provided annotation.
+	 *
+	 * @param covering
+	 *            the covering annotation
+	 * @return the covered annotation (as an optional)
+	 */
+	public Optional<T> getFirstCovered(final C covering) {
+		final int end = covering.getEnd();
+		for (int i = lowerBound(covering.getBegin()); i < begins.length && begins[i] <= end; i++) {
+			if (isCovered(i, covering)) {
+				return Optional.of(annotations.get(i));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Gets all the annotations covered by the provided annotation.
+	 *
+	 * @param covering
+	 *            the covering annotation
+	 * @return a new list of the covered annotations in index order (empty if none)
+	 */
+	public List<T> getCovered(final C covering) {
+		final int from = lowerBound(covering.getBegin());
+		final int end = covering.getEnd();
+
+		// Always a new (modifiable) list, as returned by JCasUtil.selectCovered
+		final List<T> covered = new ArrayList<>();
+		for (int i = from; i < begins.length && begins[i] <= end; i++) {
+			if (isCovered(i, covering)) {
+				covered.add(annotations.get(i));
+			}
+		}
+		return covered;
+	}
+
+	/**
+	 * Count the annotations covered by the provided annotation.
+	 *
+	 * @param covering
+	 *            the covering annotation
+	 * @return the number of covered annotations
+	 */
+	public int countCovered(final C covering) {
+		final int end = covering.getEnd();
+		int count = 0;
+		for (int i = lowerBound(covering.getBegin()); i < begins.length && begins[i] <= end; i++) {
+			if (isCovered(i, covering)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The number of annotations in the index.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return begins.length;
+	}
+
+	private boolean isCovered(final int i, final C covering) {
+		return ends[i] <= covering.getEnd() && annotations.get(i) != covering;
+	}
+
+	// The first position with begin >= offset
+	private int lowerBound(final int offset) {
+		int low = 0;
+		int high = begins.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (begins[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Build an index of the covered type from the JCas.
+	 *
+	 * @param <C>
+	 *            the covering annotation type which will be queried with (eg Sentence)
+	 * @param <T>
+	 *            the covered annotation type
+	 * @param jCas
+	 *            the jCas
+	 * @param coveredType
+	 *            the class of annotation to index (eg WordToken)
+	 * @return the coverage index (non-null)
+	 */
+	public static <C extends Annotation, T extends Annotation> CoverageIndex<C, T> build(final JCas jCas,
+			final Class<T> coveredType) {
+		return new CoverageIndex<>(JCasUtil.select(jCas, coveredType));
+	}
+}
@@ -0,0 +1,129 @@
+package com.tenode.baleen.extras.common.language;
+
+import java.util.Collection;
+
+/**
+ * An immutable, case insensitive set of words which can be queried with a range of any
+ * CharSequence.
+ *
+ * This allows a word in the document text to be checked without creating a substring or a lower
+ * case copy of it. The words are held in an open addressing (linear probing) hash table, with the
+ * hash computed over the lower cased characters.
+ *
+ * As the set can not be changed after construction it is safe to share between threads.
+ */
+public final class CaseInsensitiveWordSet {
+
+	private final char[][] table;
+
+	private final int[] hashes;
+
+	private final int mask;
+
+	private final int size;
+
+	/**
+	 * Instantiates a new word set.
+	 *
+	 * @param words
+	 *            the words (non-null)
+	 */
+	public CaseInsensitiveWordSet(final Collection<String> words) {
+		// Keep the load factor at or below a half
+		int capacity = 4;
+		while (capacity < 2 * words.size()) {
+			capacity <<= 1;
+		}
+
+		table = new char[capacity][];
+		hashes = new int[capacity];
+		mask = capacity - 1;
+
+		int count = 0;
+		for (final String word : words) {
+			final char[] lower = new char[word.length()];
+			for (int i = 0; i < lower.length; i++) {
+				lower[i] = Character.toLowerCase(word.charAt(i));
+			}
+
+			final int hash = hash(word, 0, word.length());
+			int slot = hash & mask;
+			while (table[slot] != null && !matches(slot, hash, word, 0, word.length())) {
+				slot = slot + 1 & mask;
+			}
+
+			if (table[slot] == null) {
+				table[slot] = lower;
+				hashes[slot] = hash;
+				count++;
+			}
+		}
+		size = count;
+	}
+
+	/**
+	 * Checks if the text is in the set (ignoring case).
+	 *
+	 * @param text
+	 *            the text
+	 * @return true, if the set contains the text
+	 */
+	public boolean contains(final CharSequence text) {
+		return contains(text, 0, text.length());
+	}
+
+	/**
+	 * Checks if the range text[begin, end) is in the set (ignoring case).
+	 *
+	 * @param text
+	 *            the text (eg the document text)
+	 * @param begin
+	 *            the begin offset (inclusive)
+	 * @param end
+	 *            the end offset (exclusive)
+	 * @return true, if the set contains the range of text
+	 */
+	public boolean contains(final CharSequence text, final int begin, final int end) {
+		final int hash = hash(text, begin, end);
+		int slot = hash & mask;
+		while (table[slot] != null) {
+			if (matches(slot, hash, text, begin, end)) {
+				return true;
+			}
+			slot = slot + 1 & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * The number of distinct (case insensitive) words in the set.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	private boolean matches(final int slot, final int hash, final CharSequence text, final int begin,
+			final int end) {
+		final char[] word = table[slot];
+		if (hashes[slot] != hash || word.length != end - begin) {
+			return false;
+		}
+
+		for (int i = 0; i < word.length; i++) {
+			if (word[i] != Character.toLowerCase(text.charAt(begin + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(final CharSequence text, final int begin, final int end) {
+		int h = 0;
+		for (int i = begin; i < end; i++) {
+			h = 31 * h + Character.toLowerCase(text.charAt(i));
+		}
+		return h ^ h >>> 16;
+	}
+}
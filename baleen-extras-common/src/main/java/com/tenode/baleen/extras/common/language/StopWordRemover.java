@@ -2,12 +2,15 @@ package com.tenode.baleen.extras.common.language;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Checks words against a provided stop word list.
  *
+ * Instances are immutable so may be shared between threads (see SharedStopWordResource).
  */
 // TODO: JBaker has a shared resource which is to be open source soon.
 // This class will be merged in and deprecated when that happens.
@@ -46,6 +49,10 @@ public class StopWordRemover {
 
 	private final Set<String> stopWords;
 
+	private final CaseInsensitiveWordSet lookup;
+
+	private final Pattern cleanPattern;
+
 	/**
 	 * A new stop word remover based on the DEFAULT_STOPWORDS.
 	 */
@@ -61,7 +68,8 @@ public class StopWordRemover {
 	 */
 	public StopWordRemover(final String[] words) {
 		stopWords = Arrays.asList(words).stream().map(String::toLowerCase).collect(Collectors.toSet());
-
+		lookup = new CaseInsensitiveWordSet(stopWords);
+		cleanPattern = compileCleanPattern(stopWords);
 	}
 
 	/**
@@ -72,7 +80,25 @@ public class StopWordRemover {
 	 * @return true, if is stop word
 	 */
 	public boolean isStopWord(final String word) {
-		return stopWords.contains(word.toLowerCase());
+		return lookup.contains(word);
+	}
+
+	/**
+	 * Checks if the range of text is a stop word.
+	 *
+	 * This does not create any objects, so use it to check a token directly against the document
+	 * text rather than via getCoveredText().
+	 *
+	 * @param text
+	 *            the text (eg the document text)
+	 * @param begin
+	 *            the begin offset of the word (inclusive)
+	 * @param end
+	 *            the end offset of the word (exclusive)
+	 * @return true, if is stop word
+	 */
+	public boolean isStopWord(final CharSequence text, final int begin, final int end) {
+		return lookup.contains(text, begin, end);
 	}
 
 	/**
@@ -87,19 +113,47 @@ public class StopWordRemover {
 	/**
 	 * Removes all stop words from text.
 	 *
+	 * Matching is case insensitive. Stop words are matched as whole words, except for punctuation
+	 * (eg brackets) which is removed wherever it appears.
+	 *
 	 * @param text
 	 *            the text
 	 * @return text without stop words
 	 */
 	public String clean(final String text) {
-		// TODO: not very efficient, should create a regex in the constructor
-		// from all the stop
-		// words and do it once here
-		String clean = text;
-		for (final String s : stopWords) {
-			clean = clean.replaceAll("\\b" + s + "\\b", "");
+		if (cleanPattern == null) {
+			return text;
+		}
+		return cleanPattern.matcher(text).replaceAll("");
+	}
+
+	/**
+	 * Create a single regular expression which matches any of the stop words, so text can be
+	 * cleaned in one pass.
+	 *
+	 * Longer words are placed first in the alternation so they take priority over their prefixes.
+	 * Word boundaries are only applied to ends which are word characters, as \b around punctuation
+	 * would only match when it was next to a word.
+	 */
+	private static Pattern compileCleanPattern(final Set<String> words) {
+		final String regex = words.stream()
+				.filter(w -> !w.isEmpty())
+				.sorted(Comparator.comparingInt(String::length).reversed().thenComparing(Comparator.naturalOrder()))
+				.map(w -> {
+					final String start = isWordCharacter(w.charAt(0)) ? "\\b" : "";
+					final String end = isWordCharacter(w.charAt(w.length() - 1)) ? "\\b" : "";
+					return start + Pattern.quote(w) + end;
+				})
+				.collect(Collectors.joining("|"));
+
+		if (regex.isEmpty()) {
+			return null;
 		}
-		return clean;
+		return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+	}
+
+	private static boolean isWordCharacter(final char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
 	}
 
 	/**
@@ -0,0 +1,108 @@
+package com.tenode.baleen.extras.common.resources;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+
+import com.tenode.baleen.extras.common.language.StopWordRemover;
+
+import uk.gov.dstl.baleen.uima.BaleenResource;
+
+/**
+ * A shared resource which provides a stop word list.
+ *
+ * The list is loaded once during initialisation, so all the annotators in a pipeline (and all
+ * pipeline threads) which reference this resource use the same StopWordRemover. As the remover is
+ * immutable no locking is required.
+ *
+ * The file should contain one stop word per line. Blank lines and lines starting with # are
+ * ignored. If no file is provided the default English stop words are used.
+ *
+ * @baleen.javadoc
+ */
+public class SharedStopWordResource extends BaleenResource {
+
+	/**
+	 * The stop word list, either a path on the file system or a location on the classpath.
+	 *
+	 * If empty the default stop word list is used.
+	 *
+	 * @baleen.config
+	 */
+	public static final String PARAM_FILE = "stopwords.file";
+	@ConfigurationParameter(name = SharedStopWordResource.PARAM_FILE, defaultValue = "")
+	private String stopWordFile;
+
+	private StopWordRemover stopWordRemover;
+
+	@Override
+	protected boolean doInitialize(final ResourceSpecifier specifier, final Map<String, Object> additionalParams)
+			throws ResourceInitializationException {
+
+		if (stopWordFile == null || stopWordFile.trim().isEmpty()) {
+			stopWordRemover = new StopWordRemover();
+		} else {
+			final List<String> words = readWords(stopWordFile.trim());
+			stopWordRemover = new StopWordRemover(words.toArray(new String[words.size()]));
+			getMonitor().info("Loaded {} stop words from {}", words.size(), stopWordFile);
+		}
+
+		return super.doInitialize(specifier, additionalParams);
+	}
+
+	@Override
+	protected void doDestroy() {
+		super.doDestroy();
+		stopWordRemover = null;
+	}
+
+	/**
+	 * Get the shared stop word remover.
+	 *
+	 * @return the stop word remover
+	 */
+	public StopWordRemover getStopWordRemover() {
+		return stopWordRemover;
+	}
+
+	private List<String> readWords(final String location) throws ResourceInitializationException {
+		final Path path = Paths.get(location);
+		try {
+			if (Files.isRegularFile(path)) {
+				return parse(Files.readAllLines(path, StandardCharsets.UTF_8));
+			}
+
+			final InputStream is = SharedStopWordResource.class.getClassLoader().getResourceAsStream(location);
+			if (is == null) {
+				throw new ResourceInitializationException(
+						new FileNotFoundException("Stop word list not found: " + location));
+			}
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+				return parse(reader.lines().collect(Collectors.toList()));
+			}
+		} catch (final IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
+	private List<String> parse(final List<String> lines) {
+		return lines.stream()
+				.map(String::trim)
+				.filter(s -> !s.isEmpty() && !s.startsWith("#"))
+				.collect(Collectors.toList());
+	}
+}
@@ -1,5 +1,8 @@
 package com.tenode.baleen.extras.common.grammar;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.uima.fit.factory.JCasFactory;
@@ -104,6 +107,92 @@ public class DependencyGraphTest {
 		Assert.assertEquals(4, fromTwo.size());
 	}
 
+	@Test
+	public void testNearestWordsWithDistance() {
+		final DependencyGraph graph = DependencyGraph.build(jCas);
+
+		final Map<WordToken, Integer> fromWords = graph.nearestWordsWithDistance(2, a);
+		Assert.assertEquals(3, fromWords.size());
+		Assert.assertEquals(0, (int) fromWords.get(a));
+		Assert.assertEquals(1, (int) fromWords.get(sample));
+		Assert.assertEquals(2, (int) fromWords.get(text));
+		Assert.assertFalse(fromWords.containsKey(of));
+
+		// Nearest start wins
+		final Map<WordToken, Integer> fromTwo = graph.nearestWordsWithDistance(3, a, of);
+		Assert.assertEquals(4, fromTwo.size());
+		Assert.assertEquals(1, (int) fromTwo.get(text));
+		Assert.assertEquals(1, (int) fromTwo.get(sample));
+	}
+
+	@Test
+	public void testRepeatedQueries() {
+		final DependencyGraph graph = DependencyGraph.build(jCas);
+
+		// Words reached by one query are not treated as reached by the next
+		Assert.assertEquals(3, graph.nearestWords(1, sample).size());
+		Assert.assertEquals(new HashSet<>(Arrays.asList(of, text)), graph.nearestWords(1, of));
+		Assert.assertEquals(3, graph.nearestWords(1, sample).size());
+	}
+
+	@Test
+	public void testExtractWordsWithDistance() {
+		final DependencyGraph graph = DependencyGraph.build(jCas);
+
+		final Map<WordToken, Integer> fromDependencies = graph.extractWordsWithDistance(2, dOf);
+		Assert.assertEquals(3, fromDependencies.size());
+		Assert.assertEquals(0, (int) fromDependencies.get(of));
+		Assert.assertEquals(1, (int) fromDependencies.get(text));
+		Assert.assertEquals(2, (int) fromDependencies.get(sample));
+
+		Assert.assertEquals(fromDependencies.keySet(), graph.extractWords(2, dOf));
+	}
+
+	@Test
+	public void testDistance() {
+		final DependencyGraph graph = DependencyGraph.build(jCas);
+
+		Assert.assertEquals(0, graph.distance(a, a));
+		Assert.assertEquals(1, graph.distance(a, sample));
+		Assert.assertEquals(3, graph.distance(a, of));
+		Assert.assertEquals(3, graph.distance(of, a));
+		Assert.assertEquals(-1, graph.distance(a, new WordToken(jCas)));
+	}
+
+	@Test
+	public void testShortestPath() {
+		final DependencyGraph graph = DependencyGraph.build(jCas);
+
+		Assert.assertEquals(Arrays.asList(a, sample, text, of), graph.shortestPath(a, of));
+		Assert.assertEquals(Arrays.asList(of, text, sample, a), graph.shortestPath(of, a));
+		Assert.assertEquals(Arrays.asList(sample), graph.shortestPath(sample, sample));
+		Assert.assertTrue(graph.shortestPath(a, new WordToken(jCas)).isEmpty());
+	}
+
+	@Test
+	public void testLabelledDependencies() {
+		dOf.setDependencyType("prep");
+		dText.setDependencyType("dobj");
+
+		// The unlabelled graph only holds the untyped or ROOT dependencies
+		final DependencyGraph unlabelled = DependencyGraph.build(jCas);
+		Assert.assertEquals(2, unlabelled.nearestWords(5, a).size());
+
+		final DependencyGraph graph = DependencyGraph.buildLabelled(jCas);
+		Assert.assertEquals(4, graph.nearestWords(5, a).size());
+
+		final Set<WordToken> following = graph.nearestWordsFollowing(5, Arrays.asList("dobj", "nsubj"), text);
+		Assert.assertEquals(2, following.size());
+		Assert.assertTrue(following.contains(sample));
+		Assert.assertFalse(following.contains(of));
+
+		Assert.assertEquals(Arrays.asList(of), graph.getDependents(text));
+		Assert.assertEquals(Arrays.asList(of), graph.getDependents(text, "prep"));
+		Assert.assertTrue(graph.getDependents(text, "dobj").isEmpty());
+		Assert.assertEquals(Arrays.asList(sample), graph.getGovernors(text));
+		Assert.assertTrue(graph.getGovernors(sample, "dobj").isEmpty());
+	}
+
 	@Test
 	public void testBuild() {
 		final DependencyGraph graph = DependencyGraph.build(jCas);
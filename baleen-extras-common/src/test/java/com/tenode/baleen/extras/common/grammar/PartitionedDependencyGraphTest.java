@@ -0,0 +1,92 @@
+package com.tenode.baleen.extras.common.grammar;
+
+import java.util.Set;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dstl.baleen.types.language.Dependency;
+import uk.gov.dstl.baleen.types.language.Sentence;
+import uk.gov.dstl.baleen.types.language.WordToken;
+
+public class PartitionedDependencyGraphTest {
+
+	private JCas jCas;
+	private Sentence first;
+	private Sentence second;
+	private WordToken dogs;
+	private WordToken bark;
+	private WordToken cats;
+	private WordToken purr;
+
+	@Before
+	public void setUp() throws Exception {
+		jCas = JCasFactory.createJCas();
+		jCas.setDocumentText("Dogs bark. Cats purr.");
+
+		first = new Sentence(jCas, 0, 10);
+		first.addToIndexes();
+		second = new Sentence(jCas, 11, 21);
+		second.addToIndexes();
+
+		dogs = addWord(0, 4);
+		bark = addWord(5, 9);
+		cats = addWord(11, 15);
+		purr = addWord(16, 20);
+
+		addDependency(bark, dogs);
+		addDependency(purr, cats);
+	}
+
+	private WordToken addWord(final int begin, final int end) {
+		final WordToken word = new WordToken(jCas, begin, end);
+		word.addToIndexes();
+		return word;
+	}
+
+	private void addDependency(final WordToken governor, final WordToken dependent) {
+		final Dependency d = new Dependency(jCas, dependent.getBegin(), dependent.getEnd());
+		d.setGovernor(governor);
+		d.setDependent(dependent);
+		d.addToIndexes();
+	}
+
+	@Test
+	public void testGetGraph() {
+		final PartitionedDependencyGraph graphs = new PartitionedDependencyGraph(jCas);
+
+		Assert.assertFalse(graphs.isBuilt(first));
+		final DependencyGraph graph = graphs.getGraph(first);
+		Assert.assertTrue(graphs.isBuilt(first));
+		Assert.assertFalse(graphs.isBuilt(second));
+		Assert.assertSame(graph, graphs.getGraph(first));
+
+		final Set<WordToken> words = graph.nearestWords(2, dogs);
+		Assert.assertEquals(2, words.size());
+		Assert.assertTrue(words.contains(bark));
+
+		// Only the dependencies of the sentence are in the graph
+		Assert.assertEquals(1, graph.nearestWords(2, cats).size());
+		Assert.assertEquals(2, graphs.getGraph(second).nearestWords(2, cats).size());
+	}
+
+	@Test
+	public void testRelease() {
+		final PartitionedDependencyGraph graphs = new PartitionedDependencyGraph(jCas);
+
+		final DependencyGraph graph = graphs.getGraph(first);
+		graphs.getGraph(second);
+
+		graphs.release(first);
+		Assert.assertFalse(graphs.isBuilt(first));
+		Assert.assertTrue(graphs.isBuilt(second));
+		Assert.assertNotSame(graph, graphs.getGraph(first));
+
+		graphs.releaseAll();
+		Assert.assertFalse(graphs.isBuilt(first));
+		Assert.assertFalse(graphs.isBuilt(second));
+	}
+}
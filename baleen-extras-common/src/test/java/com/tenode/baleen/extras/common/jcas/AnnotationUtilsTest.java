@@ -1,5 +1,6 @@
 package com.tenode.baleen.extras.common.jcas;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -69,6 +70,21 @@ public class AnnotationUtilsTest {
 
 	}
 
+	@Test
+	public void testFilterToTopLevelAnnotationsUnordered() {
+		final Annotation inner = new Annotation(jCas, 2, 4);
+		final Annotation outer = new Annotation(jCas, 1, 6);
+		final Annotation separate = new Annotation(jCas, 7, 9);
+		final Annotation same = new Annotation(jCas, 7, 9);
+		final Annotation last = new Annotation(jCas, 12, 14);
+
+		final List<Annotation> topLevel = AnnotationUtils
+				.filterToTopLevelAnnotations(Arrays.asList(last, inner, separate, outer, same));
+
+		// Identical spans cover each other, and the input order is retained
+		Assert.assertEquals(Arrays.asList(last, outer), topLevel);
+	}
+
 	@Test
 	public void testIsInBetween() {
 		final Annotation left = new Annotation(jCas, 0, 3);
@@ -0,0 +1,85 @@
+package com.tenode.baleen.extras.common.jcas;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dstl.baleen.types.language.Sentence;
+import uk.gov.dstl.baleen.types.language.WordToken;
+
+public class CoverageIndexTest {
+
+	private JCas jCas;
+	private Sentence first;
+	private Sentence second;
+
+	@Before
+	public void setUp() throws Exception {
+		jCas = JCasFactory.createJCas();
+		jCas.setDocumentText("One two three. Four five.");
+
+		first = new Sentence(jCas, 0, 14);
+		first.addToIndexes();
+		second = new Sentence(jCas, 15, 25);
+		second.addToIndexes();
+
+		addWord(0, 3);
+		addWord(4, 7);
+		addWord(8, 13);
+		addWord(13, 14);
+		// Crosses the sentence boundary
+		addWord(8, 19);
+		addWord(15, 19);
+		addWord(20, 24);
+		addWord(24, 25);
+	}
+
+	private void addWord(final int begin, final int end) {
+		new WordToken(jCas, begin, end).addToIndexes();
+	}
+
+	@Test
+	public void testGetCovered() {
+		final CoverageIndex<Sentence, WordToken> index = CoverageIndex.build(jCas, WordToken.class);
+		Assert.assertEquals(8, index.size());
+
+		for (final Sentence s : JCasUtil.select(jCas, Sentence.class)) {
+			final List<WordToken> expected = JCasUtil.selectCovered(jCas, WordToken.class, s);
+			Assert.assertEquals(expected, index.getCovered(s));
+			Assert.assertEquals(expected.size(), index.countCovered(s));
+		}
+
+		Assert.assertEquals(4, index.countCovered(first));
+		Assert.assertEquals(3, index.countCovered(second));
+	}
+
+	@Test
+	public void testGetFirstCovered() {
+		final CoverageIndex<Sentence, WordToken> index = CoverageIndex.build(jCas, WordToken.class);
+
+		Assert.assertEquals("One", index.getFirstCovered(first).get().getCoveredText());
+		Assert.assertEquals("Four", index.getFirstCovered(second).get().getCoveredText());
+
+		final Optional<WordToken> missing = index.getFirstCovered(new Sentence(jCas, 1, 3));
+		Assert.assertFalse(missing.isPresent());
+	}
+
+	@Test
+	public void testEmpty() {
+		final CoverageIndex<Sentence, Sentence> index = CoverageIndex.build(jCas, Sentence.class);
+
+		// A sentence does not cover itself
+		Assert.assertTrue(index.getCovered(first).isEmpty());
+		Assert.assertEquals(0, index.countCovered(first));
+		Assert.assertFalse(index.getFirstCovered(first).isPresent());
+
+		// Empty results can be modified like any other
+		index.getCovered(first).add(second);
+	}
+}
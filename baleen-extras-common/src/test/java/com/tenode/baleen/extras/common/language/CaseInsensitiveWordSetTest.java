@@ -0,0 +1,57 @@
+package com.tenode.baleen.extras.common.language;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CaseInsensitiveWordSetTest {
+
+	@Test
+	public void testContains() {
+		final CaseInsensitiveWordSet set = new CaseInsensitiveWordSet(Arrays.asList("the", "And", "(", "of"));
+
+		Assert.assertEquals(4, set.size());
+		Assert.assertTrue(set.contains("the"));
+		Assert.assertTrue(set.contains("THE"));
+		Assert.assertTrue(set.contains("and"));
+		Assert.assertTrue(set.contains("("));
+		Assert.assertFalse(set.contains("then"));
+		Assert.assertFalse(set.contains("th"));
+		Assert.assertFalse(set.contains(""));
+	}
+
+	@Test
+	public void testContainsRange() {
+		final CaseInsensitiveWordSet set = new CaseInsensitiveWordSet(Arrays.asList("the", "of"));
+
+		final String text = "Most of The text";
+		Assert.assertTrue(set.contains(text, 5, 7));
+		Assert.assertTrue(set.contains(text, 8, 11));
+		Assert.assertFalse(set.contains(text, 0, 4));
+		Assert.assertFalse(set.contains(text, 8, 12));
+	}
+
+	@Test
+	public void testDuplicatesAndEmpty() {
+		final CaseInsensitiveWordSet set = new CaseInsensitiveWordSet(Arrays.asList("word", "WORD", "Word"));
+		Assert.assertEquals(1, set.size());
+		Assert.assertTrue(set.contains("wOrD"));
+
+		final CaseInsensitiveWordSet empty = new CaseInsensitiveWordSet(Collections.emptyList());
+		Assert.assertEquals(0, empty.size());
+		Assert.assertFalse(empty.contains("word"));
+	}
+
+	@Test
+	public void testManyWords() {
+		final CaseInsensitiveWordSet set = new CaseInsensitiveWordSet(
+				Arrays.asList(StopWordRemover.getDefaultStopword()));
+
+		for (final String word : StopWordRemover.getDefaultStopword()) {
+			Assert.assertTrue(set.contains(word.toUpperCase()));
+			Assert.assertFalse(set.contains(word + "x"));
+		}
+	}
+}
@@ -37,6 +37,19 @@ public class StopWordRemoverTest {
 		Assert.assertFalse(swr.isStopWord("stop word"));
 	}
 
+	@Test
+	public void testIsStopWordRange() {
+		final String[] sw = { "stop", "words" };
+		final StopWordRemover swr = new StopWordRemover(sw);
+
+		final String text = "Please STOP these Words";
+		Assert.assertTrue(swr.isStopWord(text, 7, 11));
+		Assert.assertTrue(swr.isStopWord(text, 18, 23));
+		Assert.assertFalse(swr.isStopWord(text, 12, 17));
+		Assert.assertFalse(swr.isStopWord(text, 7, 10));
+		Assert.assertFalse(swr.isStopWord(text, 7, 12));
+	}
+
 	@Test
 	public void testClean() {
 		final String[] sw = { "stop", "words" };
@@ -52,4 +65,21 @@ public class StopWordRemoverTest {
 
 	}
 
+	@Test
+	public void testCleanPunctuationAndCase() {
+		final StopWordRemover swr = new StopWordRemover();
+
+		final String text = swr.clean("The fox (and the dog) [jumped]");
+		Assert.assertEquals("fox dog jumped", text.replaceAll("\\s+", " ").trim());
+
+		// Stop words are only removed as whole words
+		Assert.assertEquals("northern", swr.clean("northern"));
+	}
+
+	@Test
+	public void testCleanNoStopWords() {
+		final StopWordRemover swr = new StopWordRemover(new String[0]);
+		Assert.assertEquals("This has stop words", swr.clean("This has stop words"));
+	}
+
 }
@@ -0,0 +1,81 @@
+package com.tenode.baleen.extras.common.resources;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.uima.resource.Parameter;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.impl.CustomResourceSpecifier_impl;
+import org.apache.uima.resource.impl.Parameter_impl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.tenode.baleen.extras.common.language.StopWordRemover;
+
+public class SharedStopWordResourceTest {
+
+	@Test
+	public void testDefault() throws ResourceInitializationException {
+		final SharedStopWordResource resource = new SharedStopWordResource();
+		resource.initialize(new CustomResourceSpecifier_impl(), new HashMap<>());
+
+		final StopWordRemover remover = resource.getStopWordRemover();
+		Assert.assertEquals(StopWordRemover.getDefaultStopword().length, remover.getStopWords().size());
+		Assert.assertTrue(remover.isStopWord("the"));
+		Assert.assertFalse(remover.isStopWord("jumps"));
+
+		resource.destroy();
+		Assert.assertNull(resource.getStopWordRemover());
+	}
+
+	@Test
+	public void testFile() throws ResourceInitializationException, IOException {
+		final Path file = Files.createTempFile("stopwords", ".txt");
+		try {
+			Files.write(file, Arrays.asList("# A comment", "Jumps", "", "  over "), StandardCharsets.UTF_8);
+
+			final SharedStopWordResource resource = create(file.toString());
+
+			final StopWordRemover remover = resource.getStopWordRemover();
+			Assert.assertEquals(2, remover.getStopWords().size());
+			Assert.assertTrue(remover.isStopWord("jumps"));
+			Assert.assertTrue(remover.isStopWord("over"));
+			Assert.assertFalse(remover.isStopWord("the"));
+
+			resource.destroy();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testClasspath() throws ResourceInitializationException {
+		final SharedStopWordResource resource = create("com/tenode/baleen/extras/common/resources/stopwords.txt");
+
+		final StopWordRemover remover = resource.getStopWordRemover();
+		Assert.assertEquals(2, remover.getStopWords().size());
+		Assert.assertTrue(remover.isStopWord("fox"));
+		Assert.assertTrue(remover.isStopWord("dog"));
+		Assert.assertFalse(remover.isStopWord("the"));
+
+		resource.destroy();
+	}
+
+	@Test(expected = ResourceInitializationException.class)
+	public void testMissing() throws ResourceInitializationException {
+		create("does/not/exist/stopwords.txt");
+	}
+
+	private SharedStopWordResource create(final String file) throws ResourceInitializationException {
+		final CustomResourceSpecifier_impl specifier = new CustomResourceSpecifier_impl();
+		specifier.setParameters(new Parameter[] { new Parameter_impl(SharedStopWordResource.PARAM_FILE, file) });
+
+		final SharedStopWordResource resource = new SharedStopWordResource();
+		resource.initialize(specifier, new HashMap<>());
+		return resource;
+	}
+}